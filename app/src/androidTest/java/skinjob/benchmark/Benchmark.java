@@ -0,0 +1,100 @@
+package skinjob.benchmark;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Runs an operation repeatedly and reports its throughput and allocations. The operation is first
+ * run for {@link #WARMUP_MS} so that caches are filled and the JIT has compiled it, then timed for
+ * {@link #MEASUREMENT_MS}, and finally run {@link #ALLOCATION_OPS} more times with allocation
+ * counting on, since counting slows allocation down and would skew the timing.
+ */
+abstract class Benchmark {
+  private static final String TAG = "SkinJobBenchmark";
+  private static final long WARMUP_MS = 1000;
+  private static final long MEASUREMENT_MS = 3000;
+  private static final int ALLOCATION_OPS = 100;
+  /**
+   * Holds each result, so that the work producing it can't be optimized away.
+   */
+  @SuppressWarnings("unused")
+  private static volatile Object sink;
+  private final String name;
+
+  Benchmark(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Performs the operation once.
+   *
+   * @return anything the operation computed
+   */
+  protected abstract Object run();
+
+  /**
+   * Measures the operation and logs the results.
+   *
+   * @return the results
+   */
+  @SuppressWarnings("deprecation") // Allocation counting still works; it's just not recommended
+  final Result measure() {
+    runFor(WARMUP_MS);
+
+    long startNanos = System.nanoTime();
+    long ops = runFor(MEASUREMENT_MS);
+    double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+    Debug.resetThreadAllocCount();
+    Debug.resetThreadAllocSize();
+    Debug.startAllocCounting();
+    try {
+      for (int i = 0; i < ALLOCATION_OPS; i++) {
+        sink = run();
+      }
+    } finally {
+      Debug.stopAllocCounting();
+    }
+    Result result = new Result(name, ops / seconds,
+        (double) Debug.getThreadAllocCount() / ALLOCATION_OPS,
+        (double) Debug.getThreadAllocSize() / ALLOCATION_OPS);
+    Log.i(TAG, result.toString());
+    return result;
+  }
+
+  /**
+   * @return the number of times the operation was run
+   */
+  private long runFor(long millis) {
+    long ops = 0;
+    long end = SystemClock.elapsedRealtime() + millis;
+    do {
+      sink = run();
+      ops++;
+    } while (SystemClock.elapsedRealtime() < end);
+    return ops;
+  }
+
+  static final class Result {
+    final String name;
+    final double opsPerSecond;
+    final double allocationsPerOp;
+    final double bytesPerOp;
+
+    Result(String name, double opsPerSecond, double allocationsPerOp, double bytesPerOp) {
+      this.name = name;
+      this.opsPerSecond = opsPerSecond;
+      this.allocationsPerOp = allocationsPerOp;
+      this.bytesPerOp = bytesPerOp;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.US, "%s: %.1f ops/s, %.1f allocations/op, %.0f bytes/op", name,
+          opsPerSecond, allocationsPerOp, bytesPerOp);
+    }
+  }
+}
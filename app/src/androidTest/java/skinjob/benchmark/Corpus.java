@@ -0,0 +1,43 @@
+package skinjob.benchmark;
+
+/**
+ * Fixed texts that the font benchmarks measure, one per script family with its own path through
+ * the font code: Latin needs no bidi and has one glyph per char, CJK falls back to another
+ * typeface, Arabic is right-to-left and shaped, and emoji are surrogate pairs and sequences.
+ */
+enum Corpus {
+  LATIN("The quick brown fox jumps over the lazy dog, then naps in the afternoon sun."),
+  CJK("天地玄黄，宇宙洪荒。日月盈昃，辰宿列张。寒来暑往，秋收冬藏。色の白いは七難隠す。"),
+  ARABIC("الخط العربي فن جميل يكتب من اليمين إلى اليسار وتتصل حروفه ببعضها البعض."),
+  EMOJI("Party 🎉 time 😀👍 with family 👨‍👩‍👧‍👦 and flags 🇨🇦🇯🇵 plus 🏳️‍🌈 and ✌🏽 too.");
+
+  /**
+   * How many copies of {@link #text} make up {@link #getParagraph()}.
+   */
+  private static final int PARAGRAPH_REPEATS = 8;
+  private final String text;
+  private final String paragraph;
+
+  Corpus(String text) {
+    this.text = text;
+    StringBuilder paragraph = new StringBuilder(PARAGRAPH_REPEATS * (text.length() + 1));
+    for (int i = 0; i < PARAGRAPH_REPEATS; i++) {
+      paragraph.append(text).append(' ');
+    }
+    this.paragraph = paragraph.toString();
+  }
+
+  /**
+   * @return a single line of text
+   */
+  String getText() {
+    return text;
+  }
+
+  /**
+   * @return several lines' worth of text, for line breaking
+   */
+  String getParagraph() {
+    return paragraph;
+  }
+}
@@ -0,0 +1,183 @@
+package skinjob.benchmark;
+
+import android.graphics.Bitmap;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineBreakMeasurer;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.text.AttributedCharacterIterator;
+import java.text.AttributedString;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import skinjob.internal.SkinJobGraphics;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Throughput and allocation benchmarks for text measurement and rendering, run once for each
+ * {@link Corpus}. They run on a device or emulator, like the rest of the instrumented tests:
+ * <pre>
+ * ./gradlew connectedAndroidTest \
+ *     -Pandroid.testInstrumentationRunnerArguments.class=skinjob.benchmark.FontBenchmark
+ * </pre>
+ * Results are logged under the tag {@code SkinJobBenchmark}. They're only comparable between runs
+ * on the same device.
+ */
+@RunWith(Parameterized.class)
+public class FontBenchmark {
+  private static final float WRAPPING_WIDTH = 200;
+  private final Corpus corpus;
+  private final String text;
+  private final char[] chars;
+  private Font font;
+  private FontRenderContext frc;
+  private Bitmap bitmap;
+  private SkinJobGraphics graphics;
+  private FontMetrics metrics;
+
+  public FontBenchmark(Corpus corpus) {
+    this.corpus = corpus;
+    text = corpus.getText();
+    chars = text.toCharArray();
+  }
+
+  @Parameters(name = "{0}")
+  public static List<Object[]> corpora() {
+    List<Object[]> corpora = new ArrayList<>();
+    for (Corpus corpus : Corpus.values()) {
+      corpora.add(new Object[]{corpus});
+    }
+    return corpora;
+  }
+
+  @Before
+  public void setUp() {
+    font = new Font(Font.DIALOG, Font.PLAIN, 14);
+    frc = new FontRenderContext(null, true, true);
+    bitmap = Bitmap.createBitmap(1024, 64, Bitmap.Config.ARGB_8888);
+    graphics = new SkinJobGraphics(bitmap);
+    graphics.setFont(font);
+    graphics.setColor(Color.BLACK);
+    metrics = graphics.getFontMetrics(font);
+  }
+
+  @After
+  public void tearDown() {
+    graphics.dispose();
+    bitmap.recycle();
+  }
+
+  private static void measure(Benchmark benchmark) {
+    Benchmark.Result result = benchmark.measure();
+    assertTrue(result.name + " never ran", result.opsPerSecond > 0);
+  }
+
+  private String name(String operation) {
+    return operation + '[' + corpus + ']';
+  }
+
+  @Test
+  public void stringWidth() {
+    measure(new Benchmark(name("FontMetrics.stringWidth")) {
+      @Override
+      protected Object run() {
+        return metrics.stringWidth(text);
+      }
+    });
+  }
+
+  @Test
+  public void charWidth() {
+    measure(new Benchmark(name("FontMetrics.charWidth")) {
+      @Override
+      protected Object run() {
+        int width = 0;
+        for (char c : chars) {
+          width += metrics.charWidth(c);
+        }
+        return width;
+      }
+    });
+  }
+
+  @Test
+  public void getStringBounds() {
+    measure(new Benchmark(name("Font.getStringBounds")) {
+      @Override
+      protected Object run() {
+        return font.getStringBounds(text, frc);
+      }
+    });
+  }
+
+  @Test
+  public void createGlyphVector() {
+    measure(new Benchmark(name("Font.createGlyphVector")) {
+      @Override
+      protected Object run() {
+        return font.createGlyphVector(frc, text);
+      }
+    });
+  }
+
+  @Test
+  public void layoutGlyphVector() {
+    measure(new Benchmark(name("Font.layoutGlyphVector")) {
+      @Override
+      protected Object run() {
+        return font.layoutGlyphVector(frc, chars, 0, chars.length, Font.LAYOUT_LEFT_TO_RIGHT);
+      }
+    });
+  }
+
+  @Test
+  public void newTextLayout() {
+    measure(new Benchmark(name("new TextLayout")) {
+      @Override
+      protected Object run() {
+        return new TextLayout(text, font, frc);
+      }
+    });
+  }
+
+  @Test
+  public void nextLayout() {
+    AttributedString paragraph = new AttributedString(corpus.getParagraph());
+    paragraph.addAttribute(TextAttribute.FONT, font);
+    final AttributedCharacterIterator iterator = paragraph.getIterator();
+    measure(new Benchmark(name("LineBreakMeasurer.nextLayout")) {
+      @Override
+      protected Object run() {
+        LineBreakMeasurer measurer = new LineBreakMeasurer(iterator, frc);
+        TextLayout layout = null;
+        while (measurer.getPosition() < iterator.getEndIndex()) {
+          layout = measurer.nextLayout(WRAPPING_WIDTH);
+        }
+        return layout;
+      }
+    });
+  }
+
+  @Test
+  public void drawString() {
+    measure(new Benchmark(name("SkinJobGraphics.drawString")) {
+      @Override
+      protected Object run() {
+        graphics.drawString(text, 0, 32);
+        return graphics;
+      }
+    });
+  }
+}
@@ -82,6 +82,7 @@ import java.util.Vector;
 import java.util.WeakHashMap;
 
 import skinjob.internal.ComponentOrMenuComponent;
+import skinjob.internal.SkinJobDisplayList;
 import skinjob.internal.SkinJobGraphics;
 import skinjob.util.Geometry;
 import skinjob.util.SkinJobUtil;
@@ -2693,6 +2694,7 @@ public abstract class Component extends ComponentOrMenuComponent
              * some other component hasn't already done so first.
              */
       valid = false;
+      SkinJobDisplayList.invalidate(this);
       if (!isPreferredSizeSet()) {
         prefSize = null;
       }
@@ -2713,6 +2715,11 @@ public abstract class Component extends ComponentOrMenuComponent
    */
   void invalidateParent() {
     if (parent != null) {
+      if (!parent.isValid()) {
+        // The parent won't be invalidated again, but its layout manager may still have cached
+        // information about this component.
+        parent.invalidateLayoutManager();
+      }
       parent.invalidateIfValid();
     }
   }
@@ -3104,6 +3111,7 @@ public abstract class Component extends ComponentOrMenuComponent
    * @since JDK1.0
    */
   public void repaint(long tm, int x, int y, int width, int height) {
+    SkinJobDisplayList.invalidate(this, x, y, width, height);
     if (peer instanceof LightweightPeer) {
       // Needs to be translated to parent coordinates since
       // a parent native container provides the actual repaint
@@ -3437,8 +3445,9 @@ public abstract class Component extends ComponentOrMenuComponent
    * Creates a new strategy for multi-buffering on this component. Multi-buffering is useful for
    * rendering performance.  This method attempts to create the best strategy available with the
    * number of buffers supplied.  It will always create a {@code BufferStrategy} with that number of
-   * buffers. A page-flipping strategy is attempted first, then a blitting strategy using
-   * accelerated buffers.  Finally, an unaccelerated blitting strategy is used.
+   * buffers. A page-flipping strategy using accelerated buffers is attempted first, then one using
+   * unaccelerated buffers, then a blitting strategy using accelerated buffers.  Finally, an
+   * unaccelerated blitting strategy is used.
    * <p>
    * Each time this method is called, the existing buffer strategy for this component is discarded.
    *
@@ -3463,6 +3472,16 @@ public abstract class Component extends ComponentOrMenuComponent
       } catch (AWTException e) {
         // Failed
       }
+      // Try an unaccelerated page-flipping strategy
+      bufferCaps = new BufferCapabilities(new ImageCapabilities(false),
+          new ImageCapabilities(false),
+          FlipContents.UNDEFINED);
+      try {
+        createBufferStrategy(numBuffers, bufferCaps);
+        return; // Success
+      } catch (AWTException e) {
+        // Failed
+      }
     }
     // Try a blitting (but still accelerated) strategy
     bufferCaps = new BufferCapabilities(new ImageCapabilities(true),
@@ -8216,7 +8235,7 @@ public abstract class Component extends ComponentOrMenuComponent
       if (backBuffer == null) {
         return getGraphics();
       }
-      return new SkinJobGraphics(SkinJobUtil.asAndroidBitmap(backBuffer));
+      return new SkinJobGraphics(SkinJobUtil.asAndroidBitmap(backBuffer), backBuffer);
     }
 
     /**
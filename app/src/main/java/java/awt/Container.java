@@ -49,6 +49,7 @@ import java.util.EventListener;
 import java.util.HashSet;
 import java.util.Set;
 
+import skinjob.SkinJobGlobals;
 import skinjob.internal.DefaultWrappedAndroidObjectsSupplier;
 import skinjob.internal.WrappedAndroidObjectsSupplier;
 import skinjob.util.Geometry;
@@ -146,6 +147,15 @@ public class Container extends Component {
    * @see #validateUnconditionally()
    */
   private static boolean descendUnconditionallyWhenValidating = false;
+  /**
+   * Identifies the validation in progress when {@link SkinJobGlobals#asyncLayout} is set, or 0 if
+   * there is none. Sizes computed during the same pass are reused rather than recomputed.
+   * <p>
+   * Synchronization: TreeLock for writes; read without it by {@link #preferredSize()} and {@link
+   * #minimumSize()}.
+   */
+  private static volatile int layoutPass;
+  private static int lastLayoutPass;
 
   static {
   }
@@ -229,6 +239,11 @@ public class Container extends Component {
      */
   private transient int numOfHWComponents = 0;
   private transient int numOfLWComponents = 0;
+  /**
+   * The {@link #layoutPass} during which {@code prefSize} and {@code minSize} were computed.
+   */
+  private transient int prefSizeLayoutPass;
+  private transient int minSizeLayoutPass;
   /**
    * Container Serial Data Version.
    */
@@ -437,10 +452,12 @@ public class Container extends Component {
          * is available.
          */
     Dimension dim = prefSize;
-    if (dim == null || !(isPreferredSizeSet() || isValid())) {
+    if (dim == null
+        || !(isPreferredSizeSet() || isValid() || isMeasuredInLayoutPass(prefSizeLayoutPass))) {
       synchronized (getTreeLock()) {
         prefSize = (layoutMgr != null) ? layoutMgr.preferredLayoutSize(this)
             : super.preferredSize();
+        prefSizeLayoutPass = layoutPass;
         dim = prefSize;
       }
     }
@@ -484,9 +501,11 @@ public class Container extends Component {
          * is available.
          */
     Dimension dim = minSize;
-    if (dim == null || !(isMinimumSizeSet() || isValid())) {
+    if (dim == null
+        || !(isMinimumSizeSet() || isValid() || isMeasuredInLayoutPass(minSizeLayoutPass))) {
       synchronized (getTreeLock()) {
         minSize = (layoutMgr != null) ? layoutMgr.minimumLayoutSize(this) : super.minimumSize();
+        minSizeLayoutPass = layoutPass;
         dim = minSize;
       }
     }
@@ -634,9 +653,22 @@ public class Container extends Component {
         if (p != null) {
           p.beginValidate();
         }
-        validateTree();
+        boolean startsLayoutPass = SkinJobGlobals.asyncLayout && layoutPass == 0;
+        if (startsLayoutPass) {
+          layoutPass = ++lastLayoutPass == 0 ? ++lastLayoutPass : lastLayoutPass;
+        }
+        try {
+          validateTree();
+        } finally {
+          // A layout manager that throws mustn't leave the peers' layout batch open
+          if (p != null) {
+            p.endValidate();
+          }
+          if (startsLayoutPass) {
+            layoutPass = 0;
+          }
+        }
         if (p != null) {
-          p.endValidate();
           // Avoid updating cursor if this is an internal call.
           // See validateUnconditionally() for details.
           if (!descendUnconditionallyWhenValidating) {
@@ -674,6 +706,31 @@ public class Container extends Component {
     super.invalidate();
   }
 
+  /**
+   * Whether a size cached by this container was computed during the validation that is currently in
+   * progress. A size is discarded whenever the container is invalidated, so while the validation
+   * lays out the tree top-down, each container is only measured once instead of once per ancestor.
+   *
+   * @param sizeLayoutPass the layout pass during which the size was computed
+   */
+  private static boolean isMeasuredInLayoutPass(int sizeLayoutPass) {
+    int pass = layoutPass;
+    return pass != 0 && sizeLayoutPass == pass;
+  }
+
+  /**
+   * Notifies the layout manager, if it is a {@link LayoutManager2}, that layout information it may
+   * have cached is out of date, without invalidating this container.
+   * <p>
+   * This method MUST BE invoked under the TreeLock.
+   */
+  void invalidateLayoutManager() {
+    LayoutManager layoutMgr = this.layoutMgr;
+    if (layoutMgr instanceof LayoutManager2) {
+      ((LayoutManager2) layoutMgr).invalidateLayout(this);
+    }
+  }
+
   /**
    * Invalidates the parent of the container unless the container is a validate root.
    */
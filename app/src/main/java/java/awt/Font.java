@@ -27,7 +27,6 @@ package java.awt;
 
 import android.annotation.SuppressLint;
 import android.graphics.Paint;
-import android.graphics.Rect;
 import android.graphics.Typeface;
 import android.os.Build;
 import android.text.style.StyleSpan;
@@ -52,11 +51,14 @@ import java.io.OutputStream;
 import java.io.Serializable;
 import java.lang.Character.UnicodeScript;
 import java.lang.ref.SoftReference;
+import java.nio.CharBuffer;
 import java.text.AttributedCharacterIterator.Attribute;
 import java.text.CharacterIterator;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -64,6 +66,9 @@ import skinjob.SkinJobGlobals;
 import sun.font.AttributeValues;
 import sun.font.CoreMetrics;
 import sun.font.FontLineMetrics;
+import sun.font.FontManager;
+import sun.font.FontState;
+import sun.font.GlyphCoverage;
 import sun.font.GlyphLayout;
 import sun.font.StandardGlyphVector;
 
@@ -275,7 +280,6 @@ public class Font implements Serializable {
   private static final long serialVersionUID = -4206021311591459213L;
   private static final float[] ssinfo = {
       0.0f, 0.375f, 0.625f, 0.7916667f, 0.9027778f, 0.9768519f, 1.0262346f, 1.0591564f,};
-  private final transient Object maxWidthLock = new Object();
   private final transient AttributeValues values;
   /**
    * The {@code Font} Serializable Data Form.
@@ -319,7 +323,14 @@ public class Font implements Serializable {
   protected Typeface androidTypeface;
   protected Paint androidPaint;
   transient int hash;
-  private float maxWidth;
+  /**
+   * Shared with every other font that has the same typeface and point size.
+   */
+  private transient FontState state;
+  /**
+   * Created on first use by {@link #sjGetAndroidSpans()}, and then reused.
+   */
+  private transient volatile List<Object> androidSpans;
   /**
    * This is now only used during serialization.  Typically it is null.
    *
@@ -387,7 +398,7 @@ public class Font implements Serializable {
    * @since JDK1.0
    */
   public Font(String name, int style, float size) {
-    this(name, style, size, Typeface.create(name, style));
+    this(name, style, size, FontManager.getInstance().getTypeface(name, style));
   }
 
   private Font(String name, int style, float sizePts, Typeface typeface) {
@@ -395,13 +406,23 @@ public class Font implements Serializable {
     this.style = (style & ~0x03) == 0 ? style : 0;
     size = (int) (sizePts + 0.5);
     pointSize = sizePts;
-    androidTypeface = Typeface.create(typeface, style);
-    androidPaint = new Paint();
-    androidPaint.setTypeface(typeface);
-    androidPaint.setTextSize(size);
+    if (typeface.getStyle() != this.style) {
+      typeface = Typeface.create(typeface, this.style);
+    }
+    setState(typeface);
     values = new AttributeValues();
   }
 
+  private void setState(Typeface typeface) {
+    setState(FontManager.getInstance().getFontState(typeface, pointSize));
+  }
+
+  private void setState(FontState state) {
+    this.state = state;
+    androidTypeface = state.getTypeface();
+    androidPaint = state.getPaint();
+  }
+
   /* used to implement Font.createFont */
   private Font(File fontFile) {
     this(fontFile.getName(), PLAIN, 1f, Typeface.createFromFile(fontFile));
@@ -888,14 +909,7 @@ public class Font implements Serializable {
     if (values.getPosture() >= .2f) {
       style |= ITALIC; // not  == .2f
     }
-    if (androidTypeface == null) {
-      androidTypeface = Typeface.create(name, style);
-    }
-    if (androidPaint == null) {
-      androidPaint = new Paint();
-    }
-    androidPaint.setTypeface(androidTypeface);
-    androidPaint.setTextSize(pointSize);
+    setState(FontManager.getInstance().getTypeface(name, style));
     nonIdentityTx = !values.getTransform().isIdentity();
     hasLayoutAttributes = true;
   }
@@ -1353,10 +1367,9 @@ public class Font implements Serializable {
 
       fRequestedAttributes = null; // don't need it any more
     }
+    setState(FontManager.getInstance().getTypeface(name, style));
   }
 
-  private int numGlyphs = -1;
-
   /**
    * Returns the number of glyphs in this {@code Font}. Glyph codes for this {@code Font} range from
    * 0 to {@code getNumGlyphs()} - 1.
@@ -1365,21 +1378,7 @@ public class Font implements Serializable {
    * @since 1.2
    */
   public int getNumGlyphs() {
-    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-      synchronized (this) {
-        if (numGlyphs == -1) {
-          numGlyphs = 0;
-          for (int i = FIRST_CODE_POINT; i < MAX_CODE_POINT; i++) {
-            if (androidPaint.hasGlyph(new String(Character.toChars(i)))) {
-              numGlyphs++;
-            }
-          }
-        }
-        return numGlyphs;
-      }
-    } else {
-      return MAX_CODE_POINT - FIRST_CODE_POINT;
-    }
+    return state.getNumGlyphs();
   }
 
   private static final int UNICODE_WHITE_VERTICAL_RECTANGLE = 0x25AF;
@@ -1589,7 +1588,7 @@ public class Font implements Serializable {
    * @since 1.2
    */
   public boolean canDisplay(char c) {
-    return true;
+    return state.getCoverage().covers(c);
   }
 
   /**
@@ -1606,11 +1605,7 @@ public class Font implements Serializable {
     if (!Character.isValidCodePoint(codePoint)) {
       throw new IllegalArgumentException("invalid code point: " + Integer.toHexString(codePoint));
     }
-    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-      return androidPaint.hasGlyph(codePointToString(Character.toChars(codePoint)));
-    } else {
-      return true; // Must assume all glyphs displayable if hasGlyph isn't available
-    }
+    return state.getCoverage().covers(codePoint);
   }
 
   public String codePointToString(char[] value) {
@@ -1631,7 +1626,7 @@ public class Font implements Serializable {
    * @since 1.2
    */
   public int canDisplayUpTo(String str) {
-    return -1;
+    return state.getCoverage().firstUncovered(str, 0, str.length());
   }
 
   /**
@@ -1650,7 +1645,7 @@ public class Font implements Serializable {
    * @since 1.2
    */
   public int canDisplayUpTo(char[] text, int start, int limit) {
-    return -1;
+    return state.getCoverage().firstUncovered(CharBuffer.wrap(text), start, limit);
   }
 
   /**
@@ -1666,6 +1661,23 @@ public class Font implements Serializable {
    * @since 1.2
    */
   public int canDisplayUpTo(CharacterIterator iter, int start, int limit) {
+    GlyphCoverage coverage = state.getCoverage();
+    char c = iter.setIndex(start);
+    for (int i = start; i < limit; i++, c = iter.next()) {
+      if (coverage.covers(c)) {
+        continue;
+      }
+      if (!Character.isHighSurrogate(c)) {
+        return i;
+      }
+      char c2 = iter.next();
+      // c2 could be CharacterIterator.DONE which is not a low surrogate.
+      if (!Character.isLowSurrogate(c2)
+          || !coverage.covers(Character.toCodePoint(c, c2))) {
+        return i;
+      }
+      i++;
+    }
     return -1;
   }
 
@@ -1723,7 +1735,7 @@ public class Font implements Serializable {
              * just pass identity here
              */
       float[] metrics = new float[8];
-      Paint.FontMetrics androidMetrics = new Paint().getFontMetrics();
+      Paint.FontMetrics androidMetrics = state.getFontMetrics();
       float ascent = androidMetrics.ascent;
       float descent = androidMetrics.descent;
       float leading = androidMetrics.leading;
@@ -2001,25 +2013,10 @@ public class Font implements Serializable {
    * bounds.
    */
   public Rectangle2D getMaxCharBounds(FontRenderContext frc) {
-    synchronized (maxWidthLock) {
-      if (maxWidth <= 0.0) {
-        Rect bounds = new Rect();
-        char[] codePointAsChars;
-        for (int codePoint = FIRST_CODE_POINT; codePoint < MAX_CODE_POINT; codePoint++) {
-          codePointAsChars = Character.toChars(codePoint);
-          if (canDisplay(codePoint)) {
-            androidPaint.getTextBounds(codePointAsChars, 0, codePointAsChars.length, bounds);
-            float width = bounds.width();
-            if (width > maxWidth) {
-              maxWidth = width;
-            }
-          }
-        }
-      }
-    }
-    Paint.FontMetrics metrics = androidPaint.getFontMetrics();
+    Paint.FontMetrics metrics = state.getFontMetrics();
 
-    return new Rectangle2D.Float(0, metrics.top, maxWidth, metrics.bottom + metrics.leading);
+    return new Rectangle2D.Float(0, metrics.top, state.getMaxCharWidth(),
+        metrics.bottom + metrics.leading);
   }
 
   /**
@@ -2136,7 +2133,16 @@ public class Font implements Serializable {
     return androidPaint;
   }
 
+  /**
+   * @return the spans that style text in this font, which are the same objects on every call
+   */
   public Iterable<Object> sjGetAndroidSpans() {
-    return Arrays.asList(androidTypeface, new StyleSpan(getStyle()));
+    List<Object> spans = androidSpans;
+    if (spans == null) {
+      spans = Collections.unmodifiableList(
+          Arrays.<Object>asList(androidTypeface, new StyleSpan(getStyle())));
+      androidSpans = spans;
+    }
+    return spans;
   }
 }
@@ -53,6 +53,11 @@ public class GradientPaint implements Paint {
   Color color1;
   Color color2;
   boolean cyclic;
+  /**
+   * Used only by GradientPaintContext to keep the interpolation table, which doesn't need to be
+   * recalculated for each context created from this paint instance.
+   */
+  final GradientPaintContext.InterpCache interpCache = new GradientPaintContext.InterpCache();
 
   /**
    * Constructs a simple acyclic {@code GradientPaint} object.
@@ -207,7 +212,7 @@ public class GradientPaint implements Paint {
       ColorModel cm, Rectangle deviceBounds, Rectangle2D userBounds, AffineTransform xform,
       RenderingHints hints) {
 
-    return new GradientPaintContext(cm, p1, p2, xform, color1, color2, cyclic);
+    return new GradientPaintContext(interpCache, cm, p1, p2, xform, color1, color2, cyclic);
   }
 
   /**
@@ -31,7 +31,6 @@ import java.awt.geom.Point2D;
 import java.awt.image.ColorModel;
 import java.awt.image.DirectColorModel;
 import java.awt.image.Raster;
-import java.lang.ref.WeakReference;
 
 import sun.awt.image.IntegerComponentRaster;
 
@@ -39,8 +38,6 @@ class GradientPaintContext implements PaintContext {
   static final ColorModel xrgbmodel = new DirectColorModel(24, 0x00ff0000, 0x0000ff00, 0x000000ff);
   static final ColorModel xbgrmodel = new DirectColorModel(24, 0x000000ff, 0x0000ff00, 0x00ff0000);
 
-  static ColorModel cachedModel;
-  static WeakReference<Raster> cached;
   final double x1;
   final double y1;
   double dx;
@@ -50,9 +47,13 @@ class GradientPaintContext implements PaintContext {
   Raster saved;
   ColorModel model;
 
+  /**
+   * @param interpCache the paint's cache of its interpolation table, so that repainting the same
+   * gradient doesn't recompute it
+   */
   public GradientPaintContext(
-      ColorModel cm, Point2D p1, Point2D p2, AffineTransform xform, Color c1, Color c2,
-      boolean cyclic) {
+      InterpCache interpCache, ColorModel cm, Point2D p1, Point2D p2, AffineTransform xform,
+      Color c1, Color c2, boolean cyclic) {
     // First calculate the distance moved in user space when
     // we move a single unit along the X & Y axes in device space.
     Point2D xvec = new Point2D.Double(1, 0);
@@ -153,7 +154,23 @@ class GradientPaintContext implements PaintContext {
     } else {
       model = ColorModel.getRGBdefault();
     }
-    interp = new int[cyclic ? 513 : 257];
+    interp = getInterp(interpCache, a1, r1, g1, b1, da, dr, dg, db, cyclic);
+  }
+
+  /**
+   * @return the paint's interpolation table for the given start color and color difference,
+   * computing it if the paint has none for them. A paint's colors come out swapped for some
+   * transforms and color models, so it may need more than one; only the last is kept.
+   */
+  private static int[] getInterp(InterpCache interpCache,
+      int a1, int r1, int g1, int b1, int da, int dr, int dg, int db, boolean cyclic) {
+    int startArgb = a1 << 24 | r1 << 16 | g1 << 8 | b1;
+    int endArgb = (a1 + da) << 24 | (r1 + dr) << 16 | (g1 + dg) << 8 | (b1 + db);
+    Interp last = interpCache.last;
+    if (last != null && last.matches(startArgb, endArgb, cyclic)) {
+      return last.table;
+    }
+    int[] interp = new int[cyclic ? 513 : 257];
     for (int i = 0; i <= 256; i++) {
       float rel = i / 256.0f;
       int rgb = (int) (a1 + da * rel) << 24 |
@@ -165,41 +182,8 @@ class GradientPaintContext implements PaintContext {
         interp[512 - i] = rgb;
       }
     }
-  }
-
-  static synchronized Raster getCachedRaster(ColorModel cm, int w, int h) {
-    if (cm == cachedModel) {
-      if (cached != null) {
-        Raster ras = cached.get();
-        if (ras != null &&
-            ras.getWidth() >= w &&
-            ras.getHeight() >= h) {
-          cached = null;
-          return ras;
-        }
-      }
-    }
-    return cm.createCompatibleWritableRaster(w, h);
-  }
-
-  static synchronized void putCachedRaster(ColorModel cm, Raster ras) {
-    if (cached != null) {
-      Raster cras = cached.get();
-      if (cras != null) {
-        int cw = cras.getWidth();
-        int ch = cras.getHeight();
-        int iw = ras.getWidth();
-        int ih = ras.getHeight();
-        if (cw >= iw && ch >= ih) {
-          return;
-        }
-        if (cw * ch >= iw * ih) {
-          return;
-        }
-      }
-    }
-    cachedModel = cm;
-    cached = new WeakReference<>(ras);
+    interpCache.last = new Interp(startArgb, endArgb, cyclic, interp);
+    return interp;
   }
 
   /**
@@ -208,7 +192,7 @@ class GradientPaintContext implements PaintContext {
   @Override
   public void dispose() {
     if (saved != null) {
-      putCachedRaster(model, saved);
+      PaintRasterCache.put(model, saved);
       saved = null;
     }
   }
@@ -232,7 +216,7 @@ class GradientPaintContext implements PaintContext {
 
     Raster rast = saved;
     if (rast == null || rast.getWidth() < w || rast.getHeight() < h) {
-      rast = getCachedRaster(model, w, h);
+      rast = PaintRasterCache.get(model, w, h);
       saved = rast;
     }
     IntegerComponentRaster irast = (IntegerComponentRaster) rast;
@@ -310,4 +294,33 @@ class GradientPaintContext implements PaintContext {
       --h;
     }
   }
+
+  /**
+   * The interpolation table last computed for a paint. Each paint has its own, so contexts created
+   * on different threads don't contend for a shared cache.
+   */
+  static final class InterpCache {
+    private volatile Interp last;
+  }
+
+  /**
+   * An interpolation table, which is never modified once computed, and the colors it's for.
+   */
+  private static final class Interp {
+    private final int startArgb;
+    private final int endArgb;
+    private final boolean cyclic;
+    final int[] table;
+
+    Interp(int startArgb, int endArgb, boolean cyclic, int[] table) {
+      this.startArgb = startArgb;
+      this.endArgb = endArgb;
+      this.cyclic = cyclic;
+      this.table = table;
+    }
+
+    boolean matches(int startArgb, int endArgb, boolean cyclic) {
+      return this.startArgb == startArgb && this.endArgb == endArgb && this.cyclic == cyclic;
+    }
+  }
 }
@@ -269,6 +269,9 @@ public abstract class GraphicsConfiguration {
    */
   public VolatileImage createCompatibleVolatileImage(
       int width, int height, ImageCapabilities caps, int transparency) throws AWTException {
+    if (caps != null && caps.isAccelerated() && !SkinJobVolatileImage.isAccelerationSupported()) {
+      throw new AWTException("Accelerated VolatileImages are not supported");
+    }
     return new SkinJobVolatileImage(width, height, caps, transparency);
   }
 
@@ -354,6 +354,30 @@ public class GridBagLayout implements LayoutManager2, Serializable {
    * The component being positioned.  This is set before calling into {@code adjustForGravity}.
    */
   private Component componentAdjusting;
+  /**
+   * Layout information computed by {@link #getLayoutInfo(Container, int)}, indexed by size flag
+   * ({@code MINSIZE} or {@code PREFERREDSIZE}). An entry stays usable until the constraints, the
+   * children or the children's preferred sizes change; resizing the container alone doesn't discard
+   * it, since neither the grid nor the minimum or preferred cell sizes depend on the container's
+   * size.
+   */
+  private transient CachedLayoutInfo[] layoutInfoCache;
+  /**
+   * The size flag whose per-component sizes and baselines {@link #GetLayoutInfo(Container, int)}
+   * last stored in the components' constraints, or 0 if unknown.
+   */
+  private transient int constraintsSizeflag;
+  /**
+   * The container whose components {@link #ArrangeGrid(Container)} is currently resizing. Resizing a
+   * component invalidates it, but doesn't change its minimum or preferred size, so this doesn't
+   * discard the cached layout information.
+   */
+  private transient Container arrangingParent;
+  /**
+   * Scratch arrays reused by {@link #GetLayoutInfo(Container, int)} across calls.
+   */
+  private transient int[] xMaxScratch;
+  private transient int[] yMaxScratch;
 
   /**
    * Creates a grid bag layout manager.
@@ -371,6 +395,7 @@ public class GridBagLayout implements LayoutManager2, Serializable {
    */
   public void setConstraints(Component comp, GridBagConstraints constraints) {
     comptable.put(comp, (GridBagConstraints) constraints.clone());
+    layoutInfoCache = null;
   }
 
   /**
@@ -417,6 +442,7 @@ public class GridBagLayout implements LayoutManager2, Serializable {
    */
   private void removeConstraints(Component comp) {
     comptable.remove(comp);
+    layoutInfoCache = null;
   }
 
   /**
@@ -749,9 +775,26 @@ public class GridBagLayout implements LayoutManager2, Serializable {
   /**
    * Invalidates the layout, indicating that if the layout manager has cached information it should
    * be discarded.
+   * <p>
+   * The cached grid is kept if none of the components of {@code target} has been invalidated, since
+   * in that case only the container itself (e.g. its size) has changed. Changes that don't invalidate
+   * a component, such as showing or hiding it or setting its preferred size, are caught when the
+   * cached grid is next looked up.
    */
   @Override
   public void invalidateLayout(Container target) {
+    CachedLayoutInfo[] cache = layoutInfoCache;
+    if (cache == null || target == arrangingParent) {
+      return;
+    }
+    synchronized (target.getTreeLock()) {
+      for (CachedLayoutInfo cached : cache) {
+        if (cached != null && cached.parent == target && cached.hasInvalidComponent()) {
+          layoutInfoCache = null;
+          return;
+        }
+      }
+    }
   }
 
     /*
@@ -787,7 +830,28 @@ public class GridBagLayout implements LayoutManager2, Serializable {
    * @since 1.4
    */
   protected GridBagLayoutInfo getLayoutInfo(Container parent, int sizeflag) {
-    return GetLayoutInfo(parent, sizeflag);
+    if (sizeflag != MINSIZE && sizeflag != PREFERREDSIZE) {
+      return GetLayoutInfo(parent, sizeflag);
+    }
+    synchronized (parent.getTreeLock()) {
+      Component[] components = parent.getComponents();
+      CachedLayoutInfo[] cache = layoutInfoCache;
+      CachedLayoutInfo cached = cache == null ? null : cache[sizeflag];
+      if (cached != null && cached.isValidFor(this, parent, components, sizeflag)) {
+        if (constraintsSizeflag != sizeflag) {
+          cached.restoreComponentSizes();
+          constraintsSizeflag = sizeflag;
+        }
+        return cached.info;
+      }
+      GridBagLayoutInfo info = GetLayoutInfo(parent, sizeflag);
+      if (cache == null) {
+        cache = new CachedLayoutInfo[PREFERREDSIZE + 1];
+        layoutInfoCache = cache;
+      }
+      cache[sizeflag] = new CachedLayoutInfo(this, parent, components, sizeflag, info);
+      return info;
+    }
   }
 
   private long[] preInitMaximumArraySizes(Container parent) {
@@ -910,8 +974,18 @@ public class GridBagLayout implements LayoutManager2, Serializable {
         maximumArrayYIndex = Math.max(maximumArrayYIndex, columnWidths.length);
       }
 
-      xMaxArray = new int[maximumArrayXIndex];
-      yMaxArray = new int[maximumArrayYIndex];
+      xMaxArray = xMaxScratch;
+      if (xMaxArray == null || xMaxArray.length < maximumArrayXIndex) {
+        xMaxArray = xMaxScratch = new int[maximumArrayXIndex];
+      } else {
+        Arrays.fill(xMaxArray, 0, maximumArrayXIndex, 0);
+      }
+      yMaxArray = yMaxScratch;
+      if (yMaxArray == null || yMaxArray.length < maximumArrayYIndex) {
+        yMaxArray = yMaxScratch = new int[maximumArrayYIndex];
+      } else {
+        Arrays.fill(yMaxArray, 0, maximumArrayYIndex, 0);
+      }
 
       boolean hasBaseline = false;
       for (compindex = 0; compindex < components.length; compindex++) {
@@ -1033,8 +1107,8 @@ public class GridBagLayout implements LayoutManager2, Serializable {
 
       curRow = curCol = -1;
 
-      Arrays.fill(xMaxArray, 0);
-      Arrays.fill(yMaxArray, 0);
+      Arrays.fill(xMaxArray, 0, maximumArrayXIndex, 0);
+      Arrays.fill(yMaxArray, 0, maximumArrayYIndex, 0);
 
       int[] maxAscent = null;
       int[] maxDescent = null;
@@ -1203,6 +1277,7 @@ public class GridBagLayout implements LayoutManager2, Serializable {
         }
       }
 
+      constraintsSizeflag = sizeflag;
       r.weightX = new double[maximumArrayYIndex];
       r.weightY = new double[maximumArrayXIndex];
       r.minWidth = new int[maximumArrayYIndex];
@@ -1854,9 +1929,6 @@ public class GridBagLayout implements LayoutManager2, Serializable {
    * arrangeGrid}; refer to {@code arrangeGrid} for details on the parameter.
    */
   protected void ArrangeGrid(Container parent) {
-    Component comp;
-    int compindex;
-    GridBagConstraints constraints;
     Insets insets = parent.getInsets();
     Component[] components = parent.getComponents();
     Dimension d;
@@ -1890,6 +1962,8 @@ public class GridBagLayout implements LayoutManager2, Serializable {
       d = getMinSize(parent, info);
     }
 
+    // The weights are distributed into a copy, so that the cached layout information isn't modified.
+    info = new GridBagLayoutInfo(info);
     layoutInfo = info;
     r.width = d.width;
     r.height = d.height;
@@ -1973,6 +2047,21 @@ public class GridBagLayout implements LayoutManager2, Serializable {
     info.startx = diffw / 2 + insets.left;
     info.starty = diffh / 2 + insets.top;
 
+    arrangingParent = parent;
+    try {
+      arrangeComponents(parent, components, info, insets, r, diffw, diffh);
+    } finally {
+      arrangingParent = null;
+    }
+  }
+
+  private void arrangeComponents(Container parent, Component[] components, GridBagLayoutInfo info,
+      Insets insets, Rectangle r, int diffw, int diffh) {
+    Component comp;
+    int compindex;
+    GridBagConstraints constraints;
+    int i;
+
     for (compindex = 0; compindex < components.length; compindex++) {
       comp = components[compindex];
       if (!comp.isVisible()) {
@@ -2038,4 +2127,116 @@ public class GridBagLayout implements LayoutManager2, Serializable {
       }
     }
   }
+
+  /**
+   * Layout information computed for one container and size flag, along with what it was computed
+   * from: the children, their visibility, constraints and minimum or preferred sizes. The
+   * per-component sizes and baselines are kept because {@link #GetLayoutInfo(Container,
+   * int)} stores them in the shared constraints, where {@link #ArrangeGrid(Container)} later reads
+   * them.
+   */
+  private static final class CachedLayoutInfo {
+    final Container parent;
+    final GridBagLayoutInfo info;
+    private final Component[] components;
+    private final boolean[] visible;
+    private final GridBagConstraints[] constraints;
+    private final int[] sizes;
+    private final int[] componentSizes;
+    private final BaselineResizeBehavior[] baselineResizeBehaviors;
+    private final int[] columnWidths;
+    private final int[] rowHeights;
+    private final double[] columnWeights;
+    private final double[] rowWeights;
+
+    CachedLayoutInfo(GridBagLayout layout, Container parent, Component[] components, int sizeflag,
+        GridBagLayoutInfo info) {
+      this.parent = parent;
+      this.info = info;
+      this.components = components;
+      int count = components.length;
+      visible = new boolean[count];
+      constraints = new GridBagConstraints[count];
+      sizes = new int[count * 6];
+      componentSizes = new int[count * 2];
+      baselineResizeBehaviors = new BaselineResizeBehavior[count];
+      for (int i = 0; i < count; i++) {
+        Component comp = components[i];
+        if (!comp.isVisible()) {
+          continue;
+        }
+        GridBagConstraints c = layout.lookupConstraints(comp);
+        visible[i] = true;
+        constraints[i] = c;
+        int base = i * 6;
+        sizes[base] = c.minWidth;
+        sizes[base + 1] = c.minHeight;
+        sizes[base + 2] = c.ascent;
+        sizes[base + 3] = c.descent;
+        sizes[base + 4] = c.centerPadding;
+        sizes[base + 5] = c.centerOffset;
+        baselineResizeBehaviors[i] = c.baselineResizeBehavior;
+        Dimension d = getComponentSize(comp, sizeflag);
+        componentSizes[i * 2] = d.width;
+        componentSizes[i * 2 + 1] = d.height;
+      }
+      columnWidths = layout.columnWidths;
+      rowHeights = layout.rowHeights;
+      columnWeights = layout.columnWeights;
+      rowWeights = layout.rowWeights;
+    }
+
+    private static Dimension getComponentSize(Component comp, int sizeflag) {
+      return sizeflag == PREFERREDSIZE ? comp.getPreferredSize() : comp.getMinimumSize();
+    }
+
+    boolean isValidFor(GridBagLayout layout, Container parent, Component[] components,
+        int sizeflag) {
+      if (this.parent != parent || this.components.length != components.length
+          || columnWidths != layout.columnWidths || rowHeights != layout.rowHeights
+          || columnWeights != layout.columnWeights || rowWeights != layout.rowWeights) {
+        return false;
+      }
+      for (int i = 0; i < components.length; i++) {
+        Component comp = components[i];
+        if (comp != this.components[i] || comp.isVisible() != visible[i]
+            || (visible[i] && layout.comptable.get(comp) != constraints[i])) {
+          return false;
+        }
+        if (visible[i]) {
+          Dimension d = getComponentSize(comp, sizeflag);
+          if (d.width != componentSizes[i * 2] || d.height != componentSizes[i * 2 + 1]) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+
+    boolean hasInvalidComponent() {
+      for (int i = 0; i < components.length; i++) {
+        if (visible[i] && !components[i].isValid()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    void restoreComponentSizes() {
+      for (int i = 0; i < components.length; i++) {
+        GridBagConstraints c = constraints[i];
+        if (c == null) {
+          continue;
+        }
+        int base = i * 6;
+        c.minWidth = sizes[base];
+        c.minHeight = sizes[base + 1];
+        c.ascent = sizes[base + 2];
+        c.descent = sizes[base + 3];
+        c.centerPadding = sizes[base + 4];
+        c.centerOffset = sizes[base + 5];
+        c.baselineResizeBehavior = baselineResizeBehaviors[i];
+      }
+    }
+  }
 }
@@ -74,6 +74,28 @@ public class GridBagLayoutInfo implements Serializable {
     this.height = height;
   }
 
+  /**
+   * Creates a copy of {@code other} whose arrays can be modified without affecting it.
+   *
+   * @param other the layout information to copy
+   */
+  GridBagLayoutInfo(GridBagLayoutInfo other) {
+    width = other.width;
+    height = other.height;
+    startx = other.startx;
+    starty = other.starty;
+    minWidth = other.minWidth.clone();
+    minHeight = other.minHeight.clone();
+    weightX = other.weightX.clone();
+    weightY = other.weightY.clone();
+    hasBaseline = other.hasBaseline;
+    if (other.baselineType != null) {
+      baselineType = other.baselineType.clone();
+      maxAscent = other.maxAscent.clone();
+      maxDescent = other.maxDescent.clone();
+    }
+  }
+
   /**
    * Returns true if the specified row has any component aligned on the baseline with a baseline
    * resize behavior of CONSTANT_DESCENT.
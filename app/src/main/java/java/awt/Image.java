@@ -31,6 +31,7 @@ import java.awt.image.ImageObserver;
 import java.awt.image.ImageProducer;
 import java.awt.image.ReplicateScaleFilter;
 
+import skinjob.internal.SkinJobImageScaler;
 import sun.awt.image.SurfaceManager;
 
 /**
@@ -193,6 +194,11 @@ public abstract class Image {
    * @since JDK1.1
    */
   public Image getScaledInstance(int width, int height, int hints) {
+    // Resample directly when this image's pixels are available
+    Image scaled = SkinJobImageScaler.scale(this, width, height, hints);
+    if (scaled != null) {
+      return scaled;
+    }
     ImageFilter filter;
     filter = (hints & (SCALE_SMOOTH | SCALE_AREA_AVERAGING)) != 0 ? new AreaAveragingScaleFilter
         (width,
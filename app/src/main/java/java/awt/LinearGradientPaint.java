@@ -95,6 +95,12 @@ public final class LinearGradientPaint extends MultipleGradientPaint {
    * Gradient start and end points.
    */
   private final Point2D start, end;
+  /**
+   * Used only by GradientPaintContext, for the two-color gradients that it paints, to keep the
+   * interpolation table, which doesn't need to be recalculated for each context created from this
+   * paint instance.
+   */
+  final GradientPaintContext.InterpCache interpCache = new GradientPaintContext.InterpCache();
 
   /**
    * Constructs a {@code LinearGradientPaint} with a default {@code NO_CYCLE} repeating method and
@@ -267,7 +273,8 @@ public final class LinearGradientPaint extends MultipleGradientPaint {
       // faster to use the basic GradientPaintContext for this
       // common case
       boolean cyclic = cycleMethod != CycleMethod.NO_CYCLE;
-      return new GradientPaintContext(cm, start, end, transform, colors[0], colors[1], cyclic);
+      return new GradientPaintContext(
+          interpCache, cm, start, end, transform, colors[0], colors[1], cyclic);
     } else {
       return new LinearGradientPaintContext(this,
           cm,
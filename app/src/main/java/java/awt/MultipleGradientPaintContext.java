@@ -36,7 +36,6 @@ import java.awt.image.DirectColorModel;
 import java.awt.image.Raster;
 import java.awt.image.SinglePixelPackedSampleModel;
 import java.lang.ref.SoftReference;
-import java.lang.ref.WeakReference;
 
 /**
  * This is the superclass for all PaintContexts which use a multiple color gradient to fill in their
@@ -71,14 +70,6 @@ abstract class MultipleGradientPaintContext implements PaintContext {
       0x00ff0000,
       0x0000ff00,
       0x000000ff);
-  /**
-   * The cached ColorModel.
-   */
-  protected static ColorModel cachedModel;
-  /**
-   * The cached raster, which is reusable among instances.
-   */
-  protected static WeakReference<Raster> cached;
 
   static {
     // build the tables
@@ -255,49 +246,6 @@ abstract class MultipleGradientPaintContext implements PaintContext {
     return Math.round(output * 255.0f);
   }
 
-  /**
-   * Took this cacheRaster code from GradientPaint. It appears to recycle rasters for use by any
-   * other instance, as long as they are sufficiently large.
-   */
-  private static synchronized Raster getCachedRaster(ColorModel cm, int w, int h) {
-    if (cm == cachedModel) {
-      if (cached != null) {
-        Raster ras = cached.get();
-        if (ras != null &&
-            ras.getWidth() >= w &&
-            ras.getHeight() >= h) {
-          cached = null;
-          return ras;
-        }
-      }
-    }
-    return cm.createCompatibleWritableRaster(w, h);
-  }
-
-  /**
-   * Took this cacheRaster code from GradientPaint. It appears to recycle rasters for use by any
-   * other instance, as long as they are sufficiently large.
-   */
-  private static synchronized void putCachedRaster(ColorModel cm, Raster ras) {
-    if (cached != null) {
-      Raster cras = cached.get();
-      if (cras != null) {
-        int cw = cras.getWidth();
-        int ch = cras.getHeight();
-        int iw = ras.getWidth();
-        int ih = ras.getHeight();
-        if (cw >= iw && ch >= ih) {
-          return;
-        }
-        if (cw * ch >= iw * ih) {
-          return;
-        }
-      }
-    }
-    cachedModel = cm;
-    cached = new WeakReference<>(ras);
-  }
-
   /**
    * This function is the meat of this class.  It calculates an array of gradient colors based on an
    * array of fractions and color values at those fractions.
@@ -626,7 +574,7 @@ abstract class MultipleGradientPaintContext implements PaintContext {
   @Override
   public final void dispose() {
     if (saved != null) {
-      putCachedRaster(model, saved);
+      PaintRasterCache.put(model, saved);
       saved = null;
     }
   }
@@ -643,7 +591,7 @@ abstract class MultipleGradientPaintContext implements PaintContext {
     Raster raster = saved;
     if (raster == null ||
         raster.getWidth() < w || raster.getHeight() < h) {
-      raster = getCachedRaster(model, w, h);
+      raster = PaintRasterCache.get(model, w, h);
       saved = raster;
     }
 
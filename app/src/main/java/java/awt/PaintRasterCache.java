@@ -0,0 +1,73 @@
+package java.awt;
+
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.lang.ref.WeakReference;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Recycles the rasters that {@link GradientPaintContext} and {@link MultipleGradientPaintContext}
+ * fill, for use by any later context with the same {@link ColorModel} that needs a raster no larger.
+ * Each thread has its own cache, holding the largest raster released on that thread for each color
+ * model, so that threads painting gradients concurrently neither contend for a lock nor take each
+ * other's rasters. The rasters are only weakly reachable from the cache.
+ */
+final class PaintRasterCache {
+  private static final ThreadLocal<Map<ColorModel, WeakReference<Raster>>> cache
+      = new ThreadLocal<Map<ColorModel, WeakReference<Raster>>>() {
+    @Override
+    protected Map<ColorModel, WeakReference<Raster>> initialValue() {
+      // Color models are compared by identity, as they were when the cache was shared
+      return new IdentityHashMap<>();
+    }
+  };
+
+  /**
+   * Do not instantiate.
+   */
+  private PaintRasterCache() {
+  }
+
+  /**
+   * @return a cached raster at least {@code w}x{@code h}, which is removed from the cache, or else
+   * a new one
+   */
+  static Raster get(ColorModel cm, int w, int h) {
+    Map<ColorModel, WeakReference<Raster>> rasters = cache.get();
+    WeakReference<Raster> cached = rasters.get(cm);
+    if (cached != null) {
+      Raster ras = cached.get();
+      if (ras != null && ras.getWidth() >= w && ras.getHeight() >= h) {
+        rasters.remove(cm);
+        return ras;
+      }
+    }
+    return cm.createCompatibleWritableRaster(w, h);
+  }
+
+  /**
+   * Offers a raster that its context no longer needs. It's kept unless the cache already holds a
+   * raster for the same color model that's at least as large.
+   */
+  static void put(ColorModel cm, Raster ras) {
+    Map<ColorModel, WeakReference<Raster>> rasters = cache.get();
+    WeakReference<Raster> cached = rasters.get(cm);
+    if (cached != null) {
+      Raster cras = cached.get();
+      if (cras != null) {
+        int cw = cras.getWidth();
+        int ch = cras.getHeight();
+        int iw = ras.getWidth();
+        int ih = ras.getHeight();
+        if (cw >= iw && ch >= ih) {
+          return;
+        }
+        if (cw * ch >= iw * ih) {
+          return;
+        }
+      }
+    }
+    rasters.put(cm, new WeakReference<>(ras));
+  }
+}
@@ -53,14 +53,17 @@ import java.awt.geom.Rectangle2D;
 import java.text.AttributedCharacterIterator;
 import java.text.AttributedCharacterIterator.Attribute;
 import java.text.AttributedString;
+import java.text.Bidi;
 import java.text.CharacterIterator;
 import java.util.Map;
 
 import sun.font.AttributeValues;
 import sun.font.CoreMetrics;
+import sun.font.Decoration;
 import sun.font.FontResolver;
 import sun.font.GraphicComponent;
 import sun.font.LayoutPathImpl;
+import sun.font.TextLineComponent;
 import sun.text.CodePointIterator;
 
 /**
@@ -224,7 +227,19 @@ public final class TextLayout implements Cloneable {
   private boolean isVerticalLine;
   private byte baseline;
   private float[] baselineOffsets;  // why have these ?
-  private TextLine textLine;
+  /*
+   * Null until a simple layout is first asked for something that needs it. Use getTextLine() to
+   * read it, which creates it if need be. Layouts are shared between threads, so this is volatile;
+   * threads that race to create it each build an equal line, and one of them is kept.
+   */
+  private volatile TextLine textLine;
+  /*
+   * The text of a layout with a single font and style and no bidi, justification or layout path,
+   * which is enough to measure and draw it without creating a TextLine; otherwise null. Simple
+   * layouts are upgraded to a TextLine the first time they're asked for something else, such as a
+   * caret, hit or outline, but this stays set so that they're still measured and drawn from it.
+   */
+  private final SimpleText simpleText;
   // cached values computed from GlyphSets and set info:
   // all are recomputed from scratch in buildCache()
   private TextLineMetrics lineMetrics;
@@ -285,12 +300,13 @@ public final class TextLayout implements Cloneable {
 
     char[] text = string.toCharArray();
     if (sameBaselineUpTo(font, text, 0, text.length) == text.length) {
-      fastInit(text, font, attributes, frc);
+      simpleText = fastInit(text, font, attributes, frc);
     } else {
       AttributedString as = attributes == null ? new AttributedString(string)
           : new AttributedString(string, attributes);
       as.addAttribute(TextAttribute.FONT, font);
       standardInit(as.getIterator(), text, frc);
+      simpleText = null;
     }
   }
 
@@ -325,10 +341,11 @@ public final class TextLayout implements Cloneable {
     char[] text = string.toCharArray();
     Font font = singleFont(text, 0, text.length, attributes);
     if (font != null) {
-      fastInit(text, font, attributes, frc);
+      simpleText = fastInit(text, font, attributes, frc);
     } else {
       AttributedString as = new AttributedString(string, attributes);
       standardInit(as.getIterator(), text, frc);
+      simpleText = null;
     }
   }
 
@@ -371,12 +388,13 @@ public final class TextLayout implements Cloneable {
       Map<? extends Attribute, ?> attributes = text.getAttributes();
       Font font = singleFont(chars, 0, len, attributes);
       if (font != null) {
-        fastInit(chars, font, attributes, frc);
+        simpleText = fastInit(chars, font, attributes, frc);
         return;
       }
     }
 
     standardInit(text, chars, frc);
+    simpleText = null;
   }
 
   /**
@@ -398,6 +416,7 @@ public final class TextLayout implements Cloneable {
     this.baselineOffsets = baselineOffsets;
     this.textLine = textLine;
     this.justifyRatio = justifyRatio;
+    simpleText = null;
   }
 
   /*
@@ -506,8 +525,9 @@ public final class TextLayout implements Cloneable {
    * all one style
    * all renderable by one font (ie no embedded graphics)
    * all on one baseline
+   * @return the text if the layout is simple, otherwise null
    */
-  private void fastInit(
+  private SimpleText fastInit(
       char[] chars, Font font, Map<? extends Attribute, ?> attrs, FontRenderContext frc) {
 
     // Object vf = attrs.get(TextAttribute.ORIENTATION);
@@ -528,7 +548,49 @@ public final class TextLayout implements Cloneable {
 
     characterCount = chars.length;
 
+    if (attrs == null && cm.italicAngle == 0 && cm.baselineIndex >= 0
+        && !font.isTransformed() && !Bidi.requiresBidi(chars, 0, chars.length)) {
+      return new SimpleText(new TextLineComponent(
+          chars, font, cm, Decoration.getDecoration((AttributeValues) null)), chars, frc);
+    }
     textLine = TextLine.fastCreateTextLine(frc, chars, font, cm, attrs);
+    return null;
+  }
+
+  /*
+   * Returns the TextLine, first upgrading a simple layout to one. The component is handed over
+   * as it is, so the advances it has already measured aren't measured again.
+   */
+  private TextLine getTextLine() {
+    TextLine line = textLine;
+    if (line == null) {
+      TextLineComponent component = simpleText.component;
+      line = new TextLine(simpleText.frc, new TextLineComponent[]{component},
+          component.getCoreMetrics().baselineOffsets, simpleText.chars, 0, characterCount, null,
+          null, true);
+      textLine = line;
+    }
+    return line;
+  }
+
+  /*
+   * Builds the cache of a simple layout the way TextLine would for its single component,
+   * without creating the TextLine.
+   */
+  private void buildSimpleCache(SimpleText simple) {
+    TextLineComponent component = simple.component;
+    CoreMetrics cm = component.getCoreMetrics();
+    float baselineOffset = baselineOffsets[cm.baselineIndex];
+    float ascent = Math.max(0, -baselineOffset + cm.ascent);
+    float descent = Math.max(0, baselineOffset + cm.descent);
+    float leading = Math.max(0, baselineOffset + cm.descent + cm.leading) - descent;
+    lineMetrics = new TextLineMetrics(ascent, descent, leading, component.getAdvance());
+
+    int lastNonSpace = characterCount - 1;
+    while (lastNonSpace != -1 && Character.isSpaceChar(simple.chars[lastNonSpace])) {
+      --lastNonSpace;
+    }
+    visibleAdvance = component.getCharX(lastNonSpace + 1);
   }
 
   /*
@@ -582,6 +644,24 @@ public final class TextLayout implements Cloneable {
   }
 
   private void buildCache() {
+    SimpleText simple = simpleText;
+    if (simple != null) {
+      buildSimpleCache(simple);
+    } else {
+      buildLineCache();
+    }
+
+    // naturalBounds, boundsRect will be generated on demand
+    naturalBounds = null;
+    boundsRect = null;
+
+    // hashCode will be regenerated on demand
+    hashCodeCache = 0;
+
+    cacheIsValid = true;
+  }
+
+  private void buildLineCache() {
     lineMetrics = textLine.getMetrics();
 
     // compute visibleAdvance
@@ -625,15 +705,6 @@ public final class TextLayout implements Cloneable {
         visibleAdvance = lineMetrics.advance - pos;
       }
     }
-
-    // naturalBounds, boundsRect will be generated on demand
-    naturalBounds = null;
-    boundsRect = null;
-
-    // hashCode will be regenerated on demand
-    hashCodeCache = 0;
-
-    cacheIsValid = true;
   }
 
   /**
@@ -642,6 +713,7 @@ public final class TextLayout implements Cloneable {
   private Rectangle2D getNaturalBounds() {
     ensureCache();
 
+    TextLine textLine = getTextLine();
     if (naturalBounds == null) {
       naturalBounds = textLine.getItalicBounds();
     }
@@ -690,6 +762,7 @@ public final class TextLayout implements Cloneable {
 
     // default justification range to exclude trailing logical whitespace
     int limit = characterCount;
+    TextLine textLine = getTextLine();
     while (limit > 0 && textLine.isCharWhitespace(limit - 1)) {
       --limit;
     }
@@ -842,6 +915,7 @@ public final class TextLayout implements Cloneable {
   public Rectangle2D getBounds() {
     ensureCache();
 
+    TextLine textLine = getTextLine();
     if (boundsRect == null) {
       Rectangle2D vb = textLine.getVisualBounds();
       if (dx != 0 || dy != 0) {
@@ -870,7 +944,7 @@ public final class TextLayout implements Cloneable {
    * @since 1.6
    */
   public Rectangle getPixelBounds(FontRenderContext frc, float x, float y) {
-    return textLine.getPixelBounds(frc, x, y);
+    return getTextLine().getPixelBounds(frc, x, y);
   }
 
   /**
@@ -886,7 +960,7 @@ public final class TextLayout implements Cloneable {
    * false} otherwise.
    */
   public boolean isLeftToRight() {
-    return textLine.isDirectionLTR();
+    return getTextLine().isDirectionLTR();
   }
 
   /**
@@ -982,6 +1056,7 @@ public final class TextLayout implements Cloneable {
     float top1X, top2X;
     float bottom1X, bottom2X;
 
+    TextLine textLine = getTextLine();
     if (caret == 0 || caret == characterCount) {
 
       float pos;
@@ -1087,6 +1162,7 @@ public final class TextLayout implements Cloneable {
 
     int charix = hit.getCharIndex();
     boolean lead = hit.isLeadingEdge();
+    TextLine textLine = getTextLine();
     boolean ltr = textLine.isDirectionLTR();
     boolean horiz = !isVertical();
 
@@ -1177,6 +1253,7 @@ public final class TextLayout implements Cloneable {
 
     int hitIndex = hit.getCharIndex();
 
+    TextLine textLine = getTextLine();
     if (hitIndex < 0) {
       return textLine.isDirectionLTR() ? 0 : characterCount;
     }
@@ -1202,6 +1279,7 @@ public final class TextLayout implements Cloneable {
    */
   private TextHitInfo caretToHit(int caret) {
 
+    TextLine textLine = getTextLine();
     if (caret == 0 || caret == characterCount) {
 
       return (caret == characterCount) == textLine.isDirectionLTR() ? TextHitInfo.leading(
@@ -1221,6 +1299,7 @@ public final class TextLayout implements Cloneable {
       return true;
     }
 
+    TextLine textLine = getTextLine();
     int offset = textLine.visualToLogical(caret);
 
     if (!textLine.isCharLTR(offset)) {
@@ -1409,6 +1488,7 @@ public final class TextLayout implements Cloneable {
     int charIndex;
     boolean leading;
 
+    TextLine textLine = getTextLine();
     if (hitCharIndex == -1 || hitCharIndex == characterCount) {
 
       int visIndex;
@@ -1571,7 +1651,7 @@ public final class TextLayout implements Cloneable {
       throw new IllegalArgumentException("Null Rectangle2D passed to TextLayout.getCaret()");
     }
 
-    return pathToShape(getCaretPath(hit, bounds), false, textLine.getLayoutPath());
+    return pathToShape(getCaretPath(hit, bounds), false, getTextLine().getLayoutPath());
   }
 
   /**
@@ -1624,6 +1704,7 @@ public final class TextLayout implements Cloneable {
     }
 
     ensureCache();
+    TextLine textLine = getTextLine();
     if (index == -1 || index == characterCount) {
       return (byte) (textLine.isDirectionLTR() ? 0 : 1);
     }
@@ -1664,6 +1745,7 @@ public final class TextLayout implements Cloneable {
 
     int hitCaret = hitToCaret(hit);
 
+    TextLine textLine = getTextLine();
     LayoutPathImpl lp = textLine.getLayoutPath();
     Shape hitShape = pathToShape(getCaretPath(hit, bounds), false, lp);
     TextHitInfo otherHit = hit.getOtherHit();
@@ -1837,6 +1919,7 @@ public final class TextLayout implements Cloneable {
       startIndex = limitIndex;
       limitIndex = t;
     }
+    TextLine textLine = getTextLine();
 
         /*
          * now we have the visual indexes of the glyphs at the start and limit
@@ -1949,6 +2032,7 @@ public final class TextLayout implements Cloneable {
       }
     }
 
+    TextLine textLine = getTextLine();
     LayoutPathImpl lp = textLine.getLayoutPath();
     if (lp != null) {
       result = (GeneralPath) lp.mapShape(result); // dlf cast safe?
@@ -2026,6 +2110,7 @@ public final class TextLayout implements Cloneable {
     int[] carets = new int[10]; // would this ever not handle all cases?
     int count = 0;
 
+    TextLine textLine = getTextLine();
     if (firstEndpoint < secondEndpoint) {
       int logIndex = firstEndpoint;
       do {
@@ -2128,6 +2213,7 @@ public final class TextLayout implements Cloneable {
 
     GeneralPath result = new GeneralPath(GeneralPath.WIND_NON_ZERO);
 
+    TextLine textLine = getTextLine();
     if (firstEndpoint < characterCount) {
       for (int logIndex = firstEndpoint; logIndex < secondEndpoint; logIndex++) {
 
@@ -2183,6 +2269,7 @@ public final class TextLayout implements Cloneable {
   public TextHitInfo hitTestChar(float x, float y, Rectangle2D bounds) {
     // check boundary conditions
 
+    TextLine textLine = getTextLine();
     LayoutPathImpl lp = textLine.getLayoutPath();
     boolean prev = false;
     if (lp != null) {
@@ -2295,7 +2382,7 @@ public final class TextLayout implements Cloneable {
   public int hashCode() {
     if (hashCodeCache == 0) {
       ensureCache();
-      hashCodeCache = textLine.hashCode();
+      hashCodeCache = getTextLine().hashCode();
     }
     return hashCodeCache;
   }
@@ -2343,7 +2430,7 @@ public final class TextLayout implements Cloneable {
    */
   public String toString() {
     ensureCache();
-    return textLine.toString();
+    return getTextLine().toString();
   }
 
   /**
@@ -2363,7 +2450,7 @@ public final class TextLayout implements Cloneable {
     }
 
     ensureCache();
-    return textLine.equals(rhs.textLine);
+    return getTextLine().equals(rhs.getTextLine());
   }
 
   /**
@@ -2383,7 +2470,13 @@ public final class TextLayout implements Cloneable {
       throw new IllegalArgumentException("Null Graphics2D passed to TextLayout.draw()");
     }
 
-    textLine.draw(g2, x - dx, y - dy);
+    if (simpleText != null) {
+      TextLineComponent component = simpleText.component;
+      float baselineOffset = baselineOffsets[component.getCoreMetrics().baselineIndex];
+      component.draw(g2, x - dx, baselineOffset + y - dy);
+    } else {
+      getTextLine().draw(g2, x - dx, y - dy);
+    }
   }
 
   /**
@@ -2391,7 +2484,7 @@ public final class TextLayout implements Cloneable {
    */
   TextLine getTextLineForTesting() {
 
-    return textLine;
+    return getTextLine();
   }
 
   /**
@@ -2404,6 +2497,7 @@ public final class TextLayout implements Cloneable {
    */
   public Shape getOutline(AffineTransform tx) {
     ensureCache();
+    TextLine textLine = getTextLine();
     Shape result = textLine.getOutline(tx);
     LayoutPathImpl lp = textLine.getLayoutPath();
     if (lp != null) {
@@ -2420,7 +2514,7 @@ public final class TextLayout implements Cloneable {
    * @since 1.6
    */
   public LayoutPath getLayoutPath() {
-    return textLine.getLayoutPath();
+    return getTextLine().getLayoutPath();
   }
 
   /**
@@ -2448,6 +2542,7 @@ public final class TextLayout implements Cloneable {
     int ix = hit.getCharIndex();
     boolean leading = hit.isLeadingEdge();
     boolean ltr;
+    TextLine textLine = getTextLine();
     if (ix == -1 || ix == textLine.characterCount()) {
       ltr = textLine.isDirectionLTR();
       adv = lineMetrics.advance;
@@ -2500,4 +2595,19 @@ public final class TextLayout implements Cloneable {
       return layout.getStrongHit(hit1, hit2);
     }
   }
+
+  /*
+   * What a simple layout is measured, drawn and upgraded from.
+   */
+  private static final class SimpleText {
+    final TextLineComponent component;
+    final char[] chars;
+    final FontRenderContext frc;
+
+    SimpleText(TextLineComponent component, char[] chars, FontRenderContext frc) {
+      this.component = component;
+      this.chars = chars;
+      this.frc = frc;
+    }
+  }
 }
@@ -575,7 +575,7 @@ final class TextLine {
       return Font.getFont(aci.getAttributes());
     }
 
-    int ch = CodePointIterator.create(aci).next();
+    int ch = CodePointIterator.create(aci).peek();
     if (ch != CodePointIterator.DONE) {
       FontResolver resolver = FontResolver.getInstance();
       return resolver.getFont(resolver.getFontIndex(ch), aci.getAttributes());
@@ -52,6 +52,7 @@ import java.util.Map;
 
 import sun.font.AttributeValues;
 import sun.font.BidiUtils;
+import sun.font.GraphicComponent;
 import sun.font.TextLabelFactory;
 import sun.font.TextLineComponent;
 
@@ -152,6 +153,86 @@ public final class TextMeasurer implements Cloneable {
     haveLayoutWindow = false;
   }
 
+  /**
+   * Brings the components up to date after one character has been inserted ({@code delta} 1) or
+   * deleted ({@code delta} -1) at {@code changedIndex}. Without bidi, each component is one style
+   * run, and doesn't record where it starts, so only the components next to the edit (whose runs
+   * the edit may have grown, shrunk, split or merged) are generated again; the rest are kept along
+   * with their measured advances. Bidi text, whose levels may change anywhere in the paragraph,
+   * invalidates all the components.
+   *
+   * @param wasBidi whether the text needed bidi before the edit
+   */
+  private void updateComponents(int changedIndex, int delta, boolean wasBidi) {
+
+    if (fComponents == null || wasBidi || fBidi != null) {
+      invalidateComponents();
+      return;
+    }
+    if (changedIndex >= fComponentLimit) {
+      // The edit is after the components
+      return;
+    }
+    if (changedIndex < fComponentStart) {
+      fComponentStart += delta;
+      fComponentLimit += delta;
+      return;
+    }
+
+    int numComponents = fComponents.length;
+    int tlcIndex = 0;
+    int tlcStart = fComponentStart;
+    while (tlcIndex < numComponents - 1
+        && tlcStart + fComponents[tlcIndex].getNumCharacters() <= changedIndex) {
+      tlcStart += fComponents[tlcIndex].getNumCharacters();
+      tlcIndex++;
+    }
+
+    int first = tlcIndex;
+    int regenStart = tlcStart;
+    if (first > 0) {
+      first--;
+      regenStart -= fComponents[first].getNumCharacters();
+    }
+    int last = Math.min(tlcIndex + 1, numComponents - 1);
+    // A graphic records its own offsets, so it can't be moved
+    for (int i = last + 1; i < numComponents; i++) {
+      if (fComponents[i] instanceof GraphicComponent) {
+        last = numComponents - 1;
+        break;
+      }
+    }
+    int regenLimit = regenStart + delta;
+    for (int i = first; i <= last; i++) {
+      regenLimit += fComponents[i].getNumCharacters();
+    }
+    if (regenLimit <= regenStart) {
+      invalidateComponents();
+      return;
+    }
+
+    if (collectStats) {
+      formattedChars += regenLimit - regenStart;
+    }
+    TextLabelFactory factory = new TextLabelFactory(fFrc, fChars, null, 0);
+    TextLineComponent[] regenerated = TextLine.getComponents(fParagraph,
+        fChars,
+        regenStart,
+        regenLimit,
+        null,
+        null,
+        factory);
+
+    TextLineComponent[] components
+        = new TextLineComponent[numComponents - (last + 1 - first) + regenerated.length];
+    System.arraycopy(fComponents, 0, components, 0, first);
+    System.arraycopy(regenerated, 0, components, first, regenerated.length);
+    System.arraycopy(fComponents, last + 1, components, first + regenerated.length,
+        numComponents - last - 1);
+    fComponents = components;
+    fComponentLimit += delta;
+  }
+
   /**
    * Initialize state, including fChars array, direction, and fBidi.
    */
@@ -598,6 +679,7 @@ public final class TextMeasurer implements Cloneable {
     int newCharIndex = insertPos - fStart;
     System.arraycopy(fChars, 0, newChars, 0, newCharIndex);
 
+    boolean wasBidi = fBidi != null;
     char newChar = newParagraph.setIndex(insertPos);
     newChars[newCharIndex] = newChar;
     System.arraycopy(fChars, newCharIndex, newChars, newCharIndex + 1, end - insertPos - 1);
@@ -613,7 +695,7 @@ public final class TextMeasurer implements Cloneable {
     }
 
     fParagraph = StyledParagraph.insertChar(newParagraph, fChars, insertPos, fParagraph);
-    invalidateComponents();
+    updateComponents(newCharIndex, 1, wasBidi);
   }
 
   /**
@@ -646,6 +728,7 @@ public final class TextMeasurer implements Cloneable {
     System.arraycopy(fChars, changedIndex + 1, newChars, changedIndex, end - deletePos);
     fChars = newChars;
 
+    boolean wasBidi = fBidi != null;
     if (fBidi != null) {
       fBidi = new Bidi(newParagraph);
       if (fBidi.isLeftToRight()) {
@@ -654,7 +737,7 @@ public final class TextMeasurer implements Cloneable {
     }
 
     fParagraph = StyledParagraph.deleteChar(newParagraph, fChars, deletePos, fParagraph);
-    invalidateComponents();
+    updateComponents(changedIndex, -1, wasBidi);
   }
 
   /**
@@ -1,6 +1,7 @@
 package skinjob;
 
 import android.R.color;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Bitmap.CompressFormat;
@@ -120,6 +121,64 @@ public final class SkinJobGlobals {
    */
   public static volatile int autoscrollRefreshIntervalMs = 100;
   public static volatile int defaultDragThreshold = 5;
+  /**
+   * Whether {@link java.awt.Container#validate()} should compute each container's preferred and
+   * minimum size only once per validation, and commit the resulting bounds to the Android widgets
+   * on the Android UI thread rather than on the validating thread (usually the AWT event dispatch
+   * thread). While the commit is pending, the Android widgets still report their old positions and
+   * sizes.
+   */
+  public static volatile boolean asyncLayout = false;
+  /**
+   * Lowest {@link android.content.ComponentCallbacks2#onTrimMemory(int)} level at which every
+   * {@link java.awt.image.VolatileImage} loses its contents and releases its bitmap.
+   */
+  public static volatile int volatileImageTrimMemoryLevel =
+      ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+  /**
+   * Maximum total {@link android.graphics.Bitmap#getByteCount()} of the images that {@link
+   * java.awt.Toolkit#getImage(String)} and {@link java.awt.Toolkit#getImage(java.net.URL)} keep
+   * cached. The least recently used images are evicted first. Takes effect on the next insertion.
+   */
+  public static volatile long imageCacheMaxBytes = Runtime.getRuntime().maxMemory() / 8;
+  /**
+   * Maximum number of threads decoding images for {@link java.awt.Toolkit#prepareImage} and {@link
+   * java.awt.MediaTracker}.
+   */
+  public static volatile int imageDecoderThreads = Runtime.getRuntime().availableProcessors();
+  /**
+   * Maximum total {@link android.graphics.Bitmap#getByteCount()} of the released offscreen bitmaps
+   * kept for reuse by new offscreen images.
+   */
+  public static volatile long bitmapPoolMaxBytes = Runtime.getRuntime().maxMemory() / 16;
+  /**
+   * Whether the output of each lightweight component's {@link java.awt.Component#paint} is recorded
+   * and replayed by {@link skinjob.internal.SkinJobDisplayList} until the component is repainted or
+   * invalidated. Only safe if every lightweight component calls {@link
+   * java.awt.Component#repaint()} whenever its appearance changes.
+   */
+  public static volatile boolean cacheLightweightPaint = false;
+  /**
+   * Number of laid-out texts that {@link java.awt.Graphics#drawString(
+   * java.text.AttributedCharacterIterator, int, int)} keeps cached for reuse.
+   */
+  public static volatile int styledTextLayoutCacheSize = 64;
+  /**
+   * Number of text attribute maps whose decoded {@link android.text.style.CharacterStyle} spans
+   * are kept for reuse by styled text. The least recently used are evicted first.
+   */
+  public static volatile int textSpanCacheSize = 128;
+  /**
+   * Number of font and {@link java.awt.font.FontRenderContext} combinations whose glyph transforms
+   * {@link sun.font.GlyphLayout} keeps cached. The least recently used are evicted first.
+   */
+  public static volatile int strikeDescriptorCacheSize = 512;
+  /**
+   * Number of typeface and point size combinations whose {@link android.graphics.Paint} and
+   * metrics are kept for sharing by every {@link Font} created with them. The least recently used
+   * are evicted first; fonts that already use one keep it.
+   */
+  public static volatile int fontStateCacheSize = 256;
   public static volatile int defaultFontSize = 12;
   public static volatile Font defaultFont = new Font(Font.DIALOG, Font.PLAIN, defaultFontSize);
   /**
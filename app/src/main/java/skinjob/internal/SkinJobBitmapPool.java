@@ -0,0 +1,233 @@
+package skinjob.internal;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import skinjob.SkinJobGlobals;
+
+import static android.graphics.Bitmap.Config.ARGB_8888;
+
+/**
+ * Pool of mutable {@link Bitmap.Config#ARGB_8888} bitmaps, bucketed by size, that offscreen images
+ * draw from instead of allocating a new bitmap each time. A bitmap returns to the pool either
+ * explicitly through {@link #release(Bitmap)}, or when the owner it was obtained for is
+ * garbage-collected. The pool's total {@link Bitmap#getByteCount()} is bounded by {@link
+ * SkinJobGlobals#bitmapPoolMaxBytes}; the least recently released bitmaps are dropped first.
+ * <p>
+ * A bitmap must not be used after it's been released, since it may already belong to another
+ * image. {@link SkinJobGraphics} keeps the owner of its bitmap reachable for this reason, and
+ * anything that may keep an owned bitmap longer than its owner, such as a {@link
+ * android.graphics.Picture} or a shader, keeps {@link #copyIfPooled(Bitmap)} instead.
+ */
+public final class SkinJobBitmapPool {
+  private static final Object LOCK = new Object();
+  private static final Map<Long, ArrayDeque<Bitmap>> buckets = new HashMap<>();
+  /**
+   * Every pooled bitmap, least recently released first.
+   */
+  private static final LinkedHashSet<Bitmap> releaseOrder = new LinkedHashSet<>();
+  private static final Map<Bitmap, OwnerReference> owners = new IdentityHashMap<>();
+  private static final ReferenceQueue<Object> collectedOwners = new ReferenceQueue<>();
+  private static long totalBytes;
+
+  /**
+   * Do not instantiate.
+   */
+  private SkinJobBitmapPool() {
+  }
+
+  private static Long bucketKey(int width, int height) {
+    return ((long) width << 32) | (height & 0xFFFFFFFFL);
+  }
+
+  /**
+   * @return a transparent mutable bitmap, reused from the pool if one of the right size is
+   * available
+   */
+  public static Bitmap obtain(int width, int height) {
+    Bitmap bitmap = take(width, height);
+    if (bitmap == null) {
+      return Bitmap.createBitmap(width, height, ARGB_8888);
+    }
+    bitmap.eraseColor(Color.TRANSPARENT);
+    return bitmap;
+  }
+
+  /**
+   * Like {@link #obtain(int, int)}, but the bitmap also returns to the pool once {@code owner} is
+   * garbage-collected, unless it's released before then.
+   */
+  public static Bitmap obtain(int width, int height, Object owner) {
+    Bitmap bitmap = obtain(width, height);
+    synchronized (LOCK) {
+      owners.put(bitmap, new OwnerReference(owner, bitmap, collectedOwners));
+    }
+    return bitmap;
+  }
+
+  /**
+   * Returns a bitmap to the pool. Does nothing if it's null, recycled, immutable or not {@link
+   * Bitmap.Config#ARGB_8888}.
+   */
+  public static void release(Bitmap bitmap) {
+    synchronized (LOCK) {
+      OwnerReference owner = owners.remove(bitmap);
+      if (owner != null) {
+        owner.clear();
+      }
+      put(bitmap);
+    }
+  }
+
+  /**
+   * Stops tracking a bitmap obtained with {@link #obtain(int, int, Object)} without returning it to
+   * the pool, for a bitmap that's being discarded but may still be in use.
+   */
+  public static void forget(Bitmap bitmap) {
+    synchronized (LOCK) {
+      OwnerReference owner = owners.remove(bitmap);
+      if (owner != null) {
+        owner.clear();
+      }
+    }
+  }
+
+  /**
+   * @return {@code bitmap} itself, or an immutable copy if it was obtained with {@link
+   * #obtain(int, int, Object)} and so may be erased and reused once its owner is gone
+   */
+  public static Bitmap copyIfPooled(Bitmap bitmap) {
+    boolean pooled;
+    synchronized (LOCK) {
+      pooled = owners.containsKey(bitmap);
+    }
+    return pooled ? bitmap.copy(ARGB_8888, false) : bitmap;
+  }
+
+  /**
+   * Sets {@link BitmapFactory.Options#inBitmap} to a pooled bitmap that a decode producing a
+   * {@code width}x{@code height} bitmap can reuse, if there is one. Since reuse is only possible
+   * when the decoded size is known exactly, {@link BitmapFactory.Options#inSampleSize} must be 1.
+   * If the decode then throws {@link IllegalArgumentException}, the caller should clear {@code
+   * inBitmap} and retry.
+   */
+  public static void setInBitmap(BitmapFactory.Options options, int width, int height) {
+    if (options.inSampleSize > 1 || width <= 0 || height <= 0) {
+      return;
+    }
+    Bitmap bitmap = take(width, height);
+    if (bitmap != null) {
+      options.inBitmap = bitmap;
+      options.inMutable = true;
+    }
+  }
+
+  /**
+   * Empties the pool, e.g. in response to memory pressure.
+   */
+  public static void clear() {
+    synchronized (LOCK) {
+      buckets.clear();
+      releaseOrder.clear();
+      totalBytes = 0;
+    }
+  }
+
+  /**
+   * @return the total {@link Bitmap#getByteCount()} of the pooled bitmaps
+   */
+  public static long getSizeBytes() {
+    synchronized (LOCK) {
+      return totalBytes;
+    }
+  }
+
+  private static Bitmap take(int width, int height) {
+    synchronized (LOCK) {
+      reclaimCollected();
+      ArrayDeque<Bitmap> bucket = buckets.get(bucketKey(width, height));
+      if (bucket == null) {
+        return null;
+      }
+      Bitmap bitmap = bucket.pollLast();
+      if (bucket.isEmpty()) {
+        buckets.remove(bucketKey(width, height));
+      }
+      if (bitmap != null) {
+        releaseOrder.remove(bitmap);
+        totalBytes -= bitmap.getByteCount();
+      }
+      return bitmap;
+    }
+  }
+
+  /**
+   * Must hold {@link #LOCK}.
+   */
+  private static void put(Bitmap bitmap) {
+    if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()
+        || bitmap.getConfig() != ARGB_8888 || releaseOrder.contains(bitmap)) {
+      return;
+    }
+    long maxBytes = SkinJobGlobals.bitmapPoolMaxBytes;
+    int byteCount = bitmap.getByteCount();
+    if (byteCount > maxBytes) {
+      return;
+    }
+    Long key = bucketKey(bitmap.getWidth(), bitmap.getHeight());
+    ArrayDeque<Bitmap> bucket = buckets.get(key);
+    if (bucket == null) {
+      bucket = new ArrayDeque<>();
+      buckets.put(key, bucket);
+    }
+    bucket.addLast(bitmap);
+    releaseOrder.add(bitmap);
+    totalBytes += byteCount;
+    Iterator<Bitmap> eldestFirst = releaseOrder.iterator();
+    while (totalBytes > maxBytes) {
+      Bitmap evicted = eldestFirst.next();
+      eldestFirst.remove();
+      Long evictedKey = bucketKey(evicted.getWidth(), evicted.getHeight());
+      ArrayDeque<Bitmap> evictedBucket = buckets.get(evictedKey);
+      evictedBucket.remove(evicted);
+      if (evictedBucket.isEmpty()) {
+        buckets.remove(evictedKey);
+      }
+      totalBytes -= evicted.getByteCount();
+    }
+  }
+
+  /**
+   * Must hold {@link #LOCK}.
+   */
+  private static void reclaimCollected() {
+    Reference<?> reference;
+    while ((reference = collectedOwners.poll()) != null) {
+      Bitmap bitmap = ((OwnerReference) reference).bitmap;
+      if (owners.get(bitmap) == reference) {
+        owners.remove(bitmap);
+        put(bitmap);
+      }
+    }
+  }
+
+  private static final class OwnerReference extends WeakReference<Object> {
+    final Bitmap bitmap;
+
+    OwnerReference(Object owner, Bitmap bitmap, ReferenceQueue<Object> queue) {
+      super(owner, queue);
+      this.bitmap = bitmap;
+    }
+  }
+}
@@ -1,7 +1,6 @@
 package skinjob.internal;
 
 import android.graphics.Bitmap;
-import android.graphics.Bitmap.Config;
 import android.graphics.BitmapFactory;
 
 import java.awt.image.BufferedImage;
@@ -27,9 +26,13 @@ public class SkinJobBufferedImage extends BufferedImage implements SkinJobAndroi
     // TODO: Convert androidBitmap contents to the BufferedImage contents
   }
 
+  /**
+   * The bitmap comes from {@link SkinJobBitmapPool}, and returns to it once this image is
+   * garbage-collected.
+   */
   public SkinJobBufferedImage(int width, int height) {
     super(width, height, TYPE_INT_ARGB);
-    androidBitmap = Bitmap.createBitmap(width, height, Config.ARGB_8888);
+    androidBitmap = SkinJobBitmapPool.obtain(width, height, this);
   }
 
   @Override
@@ -0,0 +1,122 @@
+package skinjob.internal;
+
+import android.graphics.Bitmap;
+
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.image.ImageObserver;
+import java.awt.image.ImageProducer;
+import java.util.concurrent.Callable;
+
+/**
+ * {@link Image} returned by the {@link java.awt.Toolkit#getImage} methods, which isn't decoded
+ * until it's prepared or drawn. It's then looked up in the {@link SkinJobImageCache}, or decoded
+ * and added to it, so that prepared images are decoded by {@link SkinJobImageLoader}'s threads
+ * rather than by the caller. Until then, the width and height are -1, and an observer passed to
+ * {@link #getWidth(ImageObserver)} or {@link #getHeight(ImageObserver)} starts the decode and is
+ * notified once it finishes, as for an AWT image that's still loading.
+ */
+final class SkinJobCachedImage extends Image implements SkinJobAndroidBitmapWrapper {
+  private final Object key;
+  private final Callable<Bitmap> decoder;
+  private volatile SkinJobImage image;
+
+  SkinJobCachedImage(Object key, Callable<Bitmap> decoder) {
+    this.key = key;
+    this.decoder = decoder;
+  }
+
+  /**
+   * @return whether the image has been decoded, or has failed to decode
+   */
+  boolean sjIsLoaded() {
+    return getLoaded() != null;
+  }
+
+  /**
+   * @return the decoded image if it's available without decoding it, otherwise null
+   */
+  private SkinJobImage getLoaded() {
+    SkinJobImage loaded = image;
+    if (loaded == null) {
+      loaded = SkinJobImageCache.peek(key);
+      image = loaded;
+    }
+    return loaded;
+  }
+
+  /**
+   * @return the decoded image, decoding it on this thread if need be
+   */
+  private SkinJobImage load() {
+    SkinJobImage loaded = image;
+    if (loaded == null) {
+      // Concurrent loads of the same key share one decode
+      loaded = SkinJobImageCache.get(key, decoder);
+      image = loaded;
+    }
+    return loaded;
+  }
+
+  @Override
+  public int getWidth(ImageObserver observer) {
+    SkinJobImage loaded = getLoaded();
+    if (loaded == null) {
+      startLoading(observer);
+      return -1;
+    }
+    return loaded.getWidth(null);
+  }
+
+  @Override
+  public int getHeight(ImageObserver observer) {
+    SkinJobImage loaded = getLoaded();
+    if (loaded == null) {
+      startLoading(observer);
+      return -1;
+    }
+    return loaded.getHeight(null);
+  }
+
+  private void startLoading(ImageObserver observer) {
+    if (observer != null) {
+      SkinJobImageLoader.prepareImage(this, -1, -1, observer);
+    }
+  }
+
+  /**
+   * @return the decoded bitmap, decoding it on this thread if need be, or null if it can't be
+   * decoded
+   */
+  @Override
+  public Bitmap sjGetAndroidBitmap() {
+    return load().sjGetAndroidBitmap();
+  }
+
+  @Override
+  public ImageProducer getSource() {
+    return load().getSource();
+  }
+
+  /**
+   * @return null, since images from files and URLs are shared and mustn't be drawn into
+   */
+  @Override
+  public Graphics getGraphics() {
+    return null;
+  }
+
+  @Override
+  public Object getProperty(String name, ImageObserver observer) {
+    return null;
+  }
+
+  /**
+   * Drops this image's reference to the decoded bitmap. It's looked up in the cache again the next
+   * time it's needed, and decoded again if the cache has evicted it.
+   */
+  @Override
+  public void flush() {
+    image = null;
+  }
+}
@@ -0,0 +1,24 @@
+package skinjob.internal;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates numbered daemon threads for SkinJob's background worker pools, which must never keep the
+ * process alive.
+ */
+final class SkinJobDaemonThreadFactory implements ThreadFactory {
+  private final String namePrefix;
+  private final AtomicInteger threadCount = new AtomicInteger();
+
+  SkinJobDaemonThreadFactory(String namePrefix) {
+    this.namePrefix = namePrefix;
+  }
+
+  @Override
+  public Thread newThread(Runnable task) {
+    Thread thread = new Thread(task, namePrefix + " " + threadCount.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  }
+}
@@ -0,0 +1,291 @@
+package skinjob.internal;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.image.ImageObserver;
+import java.awt.image.ImageProducer;
+import java.io.IOException;
+
+/**
+ * {@link Image} read from an encoded file or byte array that isn't decoded until its pixels are
+ * needed. Only the header is read to report the size. When the image is scaled down, either through
+ * {@link #getScaledInstance(int, int, int)} or by {@link SkinJobGraphics} drawing it into a smaller
+ * rectangle, it's decoded with {@link BitmapFactory.Options#inSampleSize} so that the full-size
+ * bitmap is never allocated; a sub-rectangle from {@link #sjGetSubimage(int, int, int, int)} is
+ * decoded with a {@link BitmapRegionDecoder}. The last bitmap decoded is kept until {@link #flush()}
+ * and reused for any size it's large enough for.
+ */
+public class SkinJobDeferredImage extends Image implements SkinJobAndroidBitmapWrapper {
+  private final String filename;
+  private final byte[] data;
+  private final int dataOffset;
+  private final int dataLength;
+  /**
+   * Part of the encoded image to decode, or null for all of it.
+   */
+  private final Rect region;
+  /**
+   * Size this image reports, or -1 to use the size of {@link #region} or of the encoded image.
+   */
+  private final int targetWidth;
+  private final int targetHeight;
+  private int encodedWidth = -2;
+  private int encodedHeight = -2;
+  private Bitmap androidBitmap;
+  private ImageProducer source;
+
+  public SkinJobDeferredImage(String filename) {
+    this(filename, null, 0, 0, null, -1, -1);
+  }
+
+  public SkinJobDeferredImage(byte[] data, int offset, int length) {
+    this(null, data, offset, length, null, -1, -1);
+  }
+
+  private SkinJobDeferredImage(
+      String filename, byte[] data, int dataOffset, int dataLength, Rect region, int targetWidth,
+      int targetHeight) {
+    this.filename = filename;
+    this.data = data;
+    this.dataOffset = dataOffset;
+    this.dataLength = dataLength;
+    this.region = region;
+    this.targetWidth = targetWidth;
+    this.targetHeight = targetHeight;
+  }
+
+  /**
+   * @return the largest power of two by which a {@code width}x{@code height} image can be
+   * subsampled and still be at least {@code requestedWidth}x{@code requestedHeight}
+   */
+  static int calculateSampleSize(int width, int height, int requestedWidth, int requestedHeight) {
+    int sampleSize = 1;
+    if (requestedWidth <= 0 || requestedHeight <= 0) {
+      return sampleSize;
+    }
+    while (width / (sampleSize * 2) >= requestedWidth
+        && height / (sampleSize * 2) >= requestedHeight) {
+      sampleSize *= 2;
+    }
+    return sampleSize;
+  }
+
+  private synchronized void readEncodedSize() {
+    if (encodedWidth != -2) {
+      return;
+    }
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    decodeAll(options);
+    encodedWidth = options.outWidth;
+    encodedHeight = options.outHeight;
+  }
+
+  private Bitmap decodeAll(BitmapFactory.Options options) {
+    return filename == null
+        ? BitmapFactory.decodeByteArray(data, dataOffset, dataLength, options)
+        : BitmapFactory.decodeFile(filename, options);
+  }
+
+  private Bitmap decodeRegion(BitmapFactory.Options options) {
+    BitmapRegionDecoder decoder;
+    try {
+      decoder = filename == null
+          ? BitmapRegionDecoder.newInstance(data, dataOffset, dataLength, false)
+          : BitmapRegionDecoder.newInstance(filename, false);
+    } catch (IOException e) {
+      return null;
+    }
+    try {
+      return decoder.decodeRegion(region, options);
+    } finally {
+      decoder.recycle();
+    }
+  }
+
+  /**
+   * @return the size of the decoded image before {@link #targetWidth} and {@link #targetHeight}
+   * are applied, or -1 if the image can't be decoded
+   */
+  private int getSourceWidth() {
+    readEncodedSize();
+    return (region == null || encodedWidth < 0) ? encodedWidth : region.width();
+  }
+
+  private int getSourceHeight() {
+    readEncodedSize();
+    return (region == null || encodedHeight < 0) ? encodedHeight : region.height();
+  }
+
+  @Override
+  public int getWidth(ImageObserver observer) {
+    int sourceWidth = getSourceWidth();
+    return (targetWidth < 0 || sourceWidth < 0) ? sourceWidth : targetWidth;
+  }
+
+  @Override
+  public int getHeight(ImageObserver observer) {
+    int sourceHeight = getSourceHeight();
+    return (targetHeight < 0 || sourceHeight < 0) ? sourceHeight : targetHeight;
+  }
+
+  /**
+   * @return this image decoded at exactly its reported size, or null if it can't be decoded
+   */
+  @Override
+  public synchronized Bitmap sjGetAndroidBitmap() {
+    int width = getWidth(null);
+    int height = getHeight(null);
+    if (width <= 0 || height <= 0) {
+      return null;
+    }
+    if (androidBitmap == null || androidBitmap.getWidth() != width
+        || androidBitmap.getHeight() != height) {
+      Bitmap decoded = decode(width, height);
+      if (decoded != null && (decoded.getWidth() != width || decoded.getHeight() != height)) {
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, width, height, true);
+        if (scaled != decoded) {
+          decoded.recycle();
+        }
+        decoded = scaled;
+      }
+      androidBitmap = decoded;
+    }
+    return androidBitmap;
+  }
+
+  /**
+   * @return this image decoded at a size suitable for drawing into a {@code width}x{@code height}
+   * rectangle: at least that size where possible, and at most the size the image reports. The
+   * caller is responsible for scaling it the rest of the way. Null if the image can't be decoded.
+   */
+  public synchronized Bitmap sjGetAndroidBitmap(int width, int height) {
+    int fullWidth = getWidth(null);
+    int fullHeight = getHeight(null);
+    if (fullWidth <= 0 || fullHeight <= 0) {
+      return null;
+    }
+    // A scaled instance is already decoded at no more than the size it reports
+    if (targetWidth >= 0 || width >= fullWidth || height >= fullHeight) {
+      return sjGetAndroidBitmap();
+    }
+    if (androidBitmap != null && androidBitmap.getWidth() >= width
+        && androidBitmap.getHeight() >= height) {
+      return androidBitmap;
+    }
+    Bitmap decoded = decode(width, height);
+    if (decoded != null) {
+      androidBitmap = decoded;
+    }
+    return decoded;
+  }
+
+  /**
+   * @return the source image, or the region of it, subsampled as far as possible while remaining
+   * at least {@code width}x{@code height}
+   */
+  private Bitmap decode(int width, int height) {
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inSampleSize = calculateSampleSize(getSourceWidth(), getSourceHeight(), width, height);
+    if (region != null) {
+      return decodeRegion(options);
+    }
+    SkinJobBitmapPool.setInBitmap(options, getSourceWidth(), getSourceHeight());
+    Bitmap pooled = options.inBitmap;
+    Bitmap decoded = null;
+    try {
+      try {
+        decoded = decodeAll(options);
+      } catch (IllegalArgumentException e) {
+        // The pooled bitmap couldn't be reused for this image
+        options.inBitmap = null;
+        decoded = decodeAll(options);
+      }
+    } finally {
+      // Unless the image was decoded into it, the pooled bitmap goes back
+      if (pooled != null && decoded != pooled) {
+        SkinJobBitmapPool.release(pooled);
+      }
+    }
+    return decoded;
+  }
+
+  /**
+   * Returns a deferred image that will be decoded directly at the requested size. Negative
+   * dimensions preserve the aspect ratio, as in {@link Image#getScaledInstance(int, int, int)};
+   * the scaling hints are ignored, since decoding always filters.
+   */
+  @Override
+  public Image getScaledInstance(int width, int height, int hints) {
+    int sourceWidth = getWidth(null);
+    int sourceHeight = getHeight(null);
+    if (sourceWidth <= 0 || sourceHeight <= 0 || (width < 0 && height < 0)) {
+      return super.getScaledInstance(width, height, hints);
+    }
+    if (width < 0) {
+      width = Math.max(1, sourceWidth * height / sourceHeight);
+    } else if (height < 0) {
+      height = Math.max(1, sourceHeight * width / sourceWidth);
+    }
+    return new SkinJobDeferredImage(
+        filename, data, dataOffset, dataLength, region, width, height);
+  }
+
+  /**
+   * @return a deferred image containing the given rectangle of this one, which must not be scaled
+   * @throws IllegalStateException if this image has been scaled
+   * @throws IllegalArgumentException if the rectangle isn't inside this image
+   */
+  public Image sjGetSubimage(int x, int y, int width, int height) {
+    if (targetWidth >= 0 || targetHeight >= 0) {
+      throw new IllegalStateException("Can't take a subimage of a scaled image");
+    }
+    int sourceWidth = getSourceWidth();
+    int sourceHeight = getSourceHeight();
+    if (x < 0 || y < 0 || width <= 0 || height <= 0 || x + width > sourceWidth
+        || y + height > sourceHeight) {
+      throw new IllegalArgumentException(String.format(
+          "Rectangle (%d, %d, %d, %d) is outside the %dx%d image", x, y, width, height,
+          sourceWidth, sourceHeight));
+    }
+    int left = x + (region == null ? 0 : region.left);
+    int top = y + (region == null ? 0 : region.top);
+    return new SkinJobDeferredImage(filename, data, dataOffset, dataLength,
+        new Rect(left, top, left + width, top + height), -1, -1);
+  }
+
+  @Override
+  public synchronized ImageProducer getSource() {
+    if (source == null) {
+      source = new SkinJobImage(sjGetAndroidBitmap()).getSource();
+    }
+    return source;
+  }
+
+  /**
+   * @return null, since the image is decoded from an immutable source
+   */
+  @Override
+  public Graphics getGraphics() {
+    return null;
+  }
+
+  @Override
+  public Object getProperty(String name, ImageObserver observer) {
+    return UndefinedProperty;
+  }
+
+  /**
+   * Drops the decoded bitmap, which will be decoded again the next time it's needed.
+   */
+  @Override
+  public synchronized void flush() {
+    androidBitmap = null;
+    source = null;
+  }
+}
@@ -0,0 +1,205 @@
+package skinjob.internal;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Picture;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import skinjob.SkinJobGlobals;
+
+/**
+ * Drawing commands recorded through a {@link SkinJobGraphics} into an Android {@link Picture}, so
+ * that they can be replayed onto any {@link SkinJobGraphics} or {@link Canvas}, including one
+ * backed by an offscreen bitmap, without running the code that issued them again.
+ * <p>
+ * When {@link SkinJobGlobals#cacheLightweightPaint} is set, each lightweight component's {@link
+ * Component#paint(Graphics)} output is recorded the first time it's painted, and replayed on later
+ * paints until the component is repainted, invalidated or resized, or its font or colors change.
+ * Repainting a container also discards the lists of its lightweight descendants in the repainted
+ * area, since it's common to update a model and repaint only the container that shows it.
+ */
+public final class SkinJobDisplayList {
+  private static final Map<Component, SkinJobDisplayList> componentLists = new WeakHashMap<>();
+  private final Picture picture = new Picture();
+  private final int width;
+  private final int height;
+  private SkinJobGraphics recorder;
+  // What the paint code might have depended on, besides the component's own state
+  private Font font;
+  private Color foreground;
+  private Color background;
+
+  public SkinJobDisplayList(int width, int height) {
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * @return a graphics context, clipped to this display list's width and height, whose drawing is
+   * recorded until {@link #endRecording()} is called
+   */
+  public synchronized SkinJobGraphics beginRecording() {
+    if (recorder != null) {
+      throw new IllegalStateException("Already recording");
+    }
+    recorder = new SkinJobGraphics(picture.beginRecording(width, height));
+    return recorder;
+  }
+
+  /**
+   * Stops recording and disposes of the graphics context from {@link #beginRecording()}.
+   *
+   * @return false if an image drawn while recording wasn't loaded yet, so that it's missing from
+   * the recording
+   */
+  public synchronized boolean endRecording() {
+    if (recorder == null) {
+      throw new IllegalStateException("Not recording");
+    }
+    boolean complete = !recorder.sjHasPendingImages();
+    recorder.dispose();
+    recorder = null;
+    picture.endRecording();
+    return complete;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Replays the recording through {@code g}'s transform and clip.
+   *
+   * @return false if {@code g} isn't a {@link SkinJobGraphics}, in which case nothing is drawn
+   */
+  public boolean replay(Graphics g) {
+    if (!(g instanceof SkinJobGraphics)) {
+      return false;
+    }
+    ((SkinJobGraphics) g).sjDrawPicture(picture);
+    return true;
+  }
+
+  public void replay(Canvas canvas) {
+    canvas.drawPicture(picture);
+  }
+
+  /**
+   * Replays the recording into a new bitmap of this display list's width and height.
+   */
+  public Bitmap toBitmap() {
+    Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    replay(new Canvas(bitmap));
+    return bitmap;
+  }
+
+  /**
+   * Paints a lightweight component into {@code g}, replaying its cached display list if it's still
+   * valid, or else recording a new one. Calls {@link Component#paint(Graphics)} directly if caching
+   * is disabled or {@code g} isn't a {@link SkinJobGraphics}.
+   */
+  public static void paint(Component component, Graphics g) {
+    int width = component.getWidth();
+    int height = component.getHeight();
+    if (!SkinJobGlobals.cacheLightweightPaint || !(g instanceof SkinJobGraphics)
+        || width <= 0 || height <= 0) {
+      component.paint(g);
+      return;
+    }
+    Font font = g.getFont();
+    Color foreground = g.getColor();
+    Color background = component.getBackground();
+    SkinJobDisplayList displayList;
+    synchronized (componentLists) {
+      displayList = componentLists.get(component);
+    }
+    if (displayList == null || !displayList.matches(width, height, font, foreground, background)) {
+      displayList = new SkinJobDisplayList(width, height);
+      displayList.font = font;
+      displayList.foreground = foreground;
+      displayList.background = background;
+      SkinJobGraphics recorder = displayList.beginRecording();
+      recorder.setFont(font);
+      recorder.setColor(foreground);
+      boolean complete;
+      try {
+        component.paint(recorder);
+      } finally {
+        complete = displayList.endRecording();
+      }
+      synchronized (componentLists) {
+        if (complete) {
+          componentLists.put(component, displayList);
+        } else {
+          // The component will be repainted once the image loads
+          componentLists.remove(component);
+        }
+      }
+    }
+    displayList.replay(g);
+  }
+
+  /**
+   * Discards a component's cached display list, so that it's painted by its own code next time.
+   */
+  public static void invalidate(Component component) {
+    synchronized (componentLists) {
+      componentLists.remove(component);
+    }
+  }
+
+  /**
+   * Discards the cached display lists of a component and of its lightweight descendants that
+   * overlap the given area, which is in the component's coordinates.
+   */
+  public static void invalidate(Component component, int x, int y, int width, int height) {
+    synchronized (componentLists) {
+      if (componentLists.isEmpty()) {
+        return;
+      }
+      componentLists.remove(component);
+    }
+    if (!(component instanceof Container) || width <= 0 || height <= 0) {
+      return;
+    }
+    // Not under componentLists' lock, since getComponents() takes the tree lock
+    for (Component child : ((Container) component).getComponents()) {
+      int childX = child.getX();
+      int childY = child.getY();
+      if (child.isLightweight() && (long) x + width > childX
+          && x < (long) childX + child.getWidth() && (long) y + height > childY
+          && y < (long) childY + child.getHeight()) {
+        invalidate(child, x - childX, y - childY, width, height);
+      }
+    }
+  }
+
+  /**
+   * Discards every component's cached display list.
+   */
+  public static void clear() {
+    synchronized (componentLists) {
+      componentLists.clear();
+    }
+  }
+
+  private boolean matches(int width, int height, Font font, Color foreground, Color background) {
+    return this.width == width && this.height == height && equal(this.font, font)
+        && equal(this.foreground, foreground) && equal(this.background, background);
+  }
+
+  private static boolean equal(Object a, Object b) {
+    return (a == null) ? (b == null) : a.equals(b);
+  }
+}
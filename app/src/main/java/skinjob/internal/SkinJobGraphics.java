@@ -3,18 +3,23 @@ package skinjob.internal;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.DashPathEffect;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Paint.Cap;
 import android.graphics.Paint.Join;
 import android.graphics.Paint.Style;
 import android.graphics.Path;
+import android.graphics.Picture;
 import android.graphics.PorterDuff.Mode;
 import android.graphics.PorterDuffColorFilter;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Shader;
 import android.os.Build;
 import android.support.annotation.RequiresApi;
-import android.text.SpannableStringBuilder;
+import android.text.StaticLayout;
 import android.util.Log;
-import android.widget.TextView;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
@@ -38,12 +43,12 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
+import java.awt.image.DataBufferInt;
 import java.awt.image.ImageObserver;
 import java.awt.image.RenderedImage;
 import java.awt.image.renderable.RenderableImage;
 import java.text.AttributedCharacterIterator;
-import java.text.AttributedCharacterIterator.Attribute;
-import java.text.CharacterIterator;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
@@ -71,19 +76,56 @@ public class SkinJobGraphics extends Graphics2D {
       new HashSet<CancelableImageObserver>());
   private final Canvas canvas;
   private final Bitmap bitmap;
+  @SuppressWarnings({"FieldCanBeLocal", "unused"})
+  private final Object bitmapOwner;
   private final Paint pen;
   private final Paint brush;
   private final Paint eraser;
+  /**
+   * Replaces the destination pixels, including their alpha, for {@link #copyArea}.
+   */
+  private final Paint copier;
   private final RenderingHints renderingHints = SkinJobGlobals.defaultRenderingHints;
   private Stroke stroke = new BasicStroke();
   private java.awt.Paint awtPaint;
   private int color = Color.BLACK.getRGB();
   private Shape clip;
+  /**
+   * Save count of the canvas state from before {@link #clip} was applied to the canvas.
+   */
+  private int clipSaveCount;
   // TODO: Most methods currently don't apply the transform; they need to!
   private AffineTransform transform = new AffineTransform();
   private Font font = SkinJobGlobals.defaultFont;
+  /**
+   * Destination of the last {@link #drawImage(BufferedImage, BufferedImageOp, int, int)}, kept for
+   * reuse by the next one of the same size. Null while a draw is using it.
+   */
+  private BufferedImage filterDestination;
 
   public SkinJobGraphics(Bitmap androidBitmap) {
+    this(androidBitmap, null);
+  }
+
+  /**
+   * @param bitmapOwner the image that owns {@code androidBitmap}, which is kept reachable as long
+   * as this is, so that a bitmap from {@link SkinJobBitmapPool} isn't reused while it's being drawn
+   * into
+   */
+  public SkinJobGraphics(Bitmap androidBitmap, Object bitmapOwner) {
+    this(new Canvas(androidBitmap), androidBitmap, bitmapOwner);
+  }
+
+  /**
+   * Draws into a canvas that may have no bitmap, such as one recording a {@link Picture} for a
+   * {@link SkinJobDisplayList}. The initial clip is the canvas's width and height.
+   */
+  public SkinJobGraphics(Canvas canvas) {
+    this(canvas, null, null);
+  }
+
+  private SkinJobGraphics(Canvas canvas, Bitmap androidBitmap, Object bitmapOwner) {
+    this.bitmapOwner = bitmapOwner;
     pen = new Paint();
     pen.setStrokeWidth(0);
     pen.setStyle(Style.STROKE);
@@ -92,15 +134,26 @@ public class SkinJobGraphics extends Graphics2D {
     eraser = new Paint();
     eraser.setStyle(Style.FILL);
     eraser.setAlpha(0);
+    copier = new Paint();
+    copier.setXfermode(new PorterDuffXfermode(Mode.SRC));
     bitmap = androidBitmap;
-    canvas = new Canvas(androidBitmap);
-    clip = new Rectangle2D.Double(0, 0, androidBitmap.getWidth(), androidBitmap.getHeight());
+    this.canvas = canvas;
+    clipSaveCount = canvas.save();
+    clip = new Rectangle2D.Double(0, 0, canvas.getWidth(), canvas.getHeight());
   }
 
   public Bitmap sjGetAndroidBitmap() {
     return bitmap;
   }
 
+  /**
+   * @return {@code source}, or a copy of it if it's a pooled bitmap and this is recording a {@link
+   * Picture}, which keeps every bitmap drawn into it for as long as it's replayed
+   */
+  private Bitmap toDrawable(Bitmap source) {
+    return (bitmap == null && source != null) ? SkinJobBitmapPool.copyIfPooled(source) : source;
+  }
+
   @Override
   public Graphics create() {
     return null;
@@ -114,6 +167,7 @@ public class SkinJobGraphics extends Graphics2D {
   @Override
   public synchronized void setColor(Color c) {
     setColor(c.getRGB());
+    awtPaint = c;
   }
 
   @Override
@@ -164,15 +218,17 @@ public class SkinJobGraphics extends Graphics2D {
       // No existing clip to intersect with
       setClip(x, y, width, height);
     } else {
-      Area clipArea = Geometry.asArea(clip);
+      Area clipArea = new Area(clip);
       clipArea.intersect(new Area(new Rectangle2D.Double(x, y, width, height)));
       clip = clipArea;
+      canvas.clipRect(x, y, x + width, y + height);
     }
   }
 
   @Override
-  public void setClip(int x, int y, int width, int height) {
+  public synchronized void setClip(int x, int y, int width, int height) {
     clip = new Rectangle2D.Double(x, y, width, height);
+    applyClip();
   }
 
   @Override
@@ -181,13 +237,79 @@ public class SkinJobGraphics extends Graphics2D {
   }
 
   @Override
-  public void setClip(Shape clip) {
+  public synchronized void setClip(Shape clip) {
     this.clip = clip;
+    applyClip();
+  }
+
+  /**
+   * Replaces the canvas's clip with {@link #clip}. A canvas clip can only be narrowed, so this
+   * restores the canvas state from before the previous clip was applied, keeping the current
+   * matrix.
+   */
+  private void applyClip() {
+    Matrix matrix = canvas.getMatrix();
+    canvas.restoreToCount(clipSaveCount);
+    clipSaveCount = canvas.save();
+    canvas.setMatrix(matrix);
+    if (clip != null) {
+      clipCanvas(clip);
+    }
+  }
+
+  private void clipCanvas(Shape s) {
+    if (s instanceof Rectangle2D) {
+      Rectangle2D r = (Rectangle2D) s;
+      canvas.clipRect((float) r.getMinX(), (float) r.getMinY(), (float) r.getMaxX(),
+          (float) r.getMaxY());
+    } else {
+      canvas.clipPath(Geometry.asAndroidPath(s, new AffineTransform()));
+    }
   }
 
+  /**
+   * Copies through a scratch bitmap from {@link SkinJobBitmapPool}, since a bitmap can't be drawn
+   * onto itself when the areas overlap. Repeated scrolls by the same amount reuse the same scratch
+   * bitmap. Both areas are mapped to device space through the current transform, and the copy is
+   * clipped to the current clip. Does nothing when drawing into a canvas without a bitmap.
+   */
   @Override
-  public void copyArea(int x, int y, int width, int height, int dx, int dy) {
-    // TODO
+  public synchronized void copyArea(int x, int y, int width, int height, int dx, int dy) {
+    if (bitmap == null || width <= 0 || height <= 0) {
+      return;
+    }
+    Matrix toDevice = canvas.getMatrix();
+    toDevice.preConcat(Geometry.transformToMatrix(transform));
+    Rect src = toDeviceRect(toDevice, x, y, width, height);
+    Rect dst = toDeviceRect(toDevice, x + dx, y + dy, width, height);
+    // Only the part of the source that's inside the bitmap can be copied
+    int srcLeft = src.left;
+    int srcTop = src.top;
+    if (!src.intersect(0, 0, bitmap.getWidth(), bitmap.getHeight())) {
+      return;
+    }
+    dst.offset(src.left - srcLeft, src.top - srcTop);
+    dst.right = dst.left + src.width();
+    dst.bottom = dst.top + src.height();
+    Bitmap scratch = SkinJobBitmapPool.obtain(src.width(), src.height());
+    try {
+      new Canvas(scratch).drawBitmap(bitmap, src, new Rect(0, 0, src.width(), src.height()), null);
+      // The clip is kept in device space, so resetting the matrix doesn't affect it
+      int saveCount = canvas.save();
+      canvas.setMatrix(null);
+      canvas.drawBitmap(scratch, null, dst, copier);
+      canvas.restoreToCount(saveCount);
+    } finally {
+      SkinJobBitmapPool.release(scratch);
+    }
+  }
+
+  private static Rect toDeviceRect(Matrix toDevice, int x, int y, int width, int height) {
+    RectF rect = new RectF(x, y, x + width, y + height);
+    toDevice.mapRect(rect);
+    Rect rounded = new Rect();
+    rect.round(rounded);
+    return rounded;
   }
 
   @Override
@@ -272,7 +394,7 @@ public class SkinJobGraphics extends Graphics2D {
   public synchronized boolean drawImage(Image img, int x, int y, ImageObserver observer) {
     AffineTransform combinedTransform = new AffineTransform(transform);
     combinedTransform.translate(x, y);
-    canvas.drawBitmap(asAndroidBitmap(img),
+    canvas.drawBitmap(toDrawable(asAndroidBitmap(img)),
         Geometry.transformToMatrix(combinedTransform), brush);
     return true;
   }
@@ -330,11 +452,17 @@ public class SkinJobGraphics extends Graphics2D {
       @Override
       public boolean imageUpdateInternal(
           Image img_, int infoflags, int x_, int y_, int origWidth, int origHeight) {
-        float scaleX = width / (float) origWidth;
-        float scaleY = height / (float) origHeight;
-        canvas.drawBitmap(asAndroidBitmap(img),
-            Geometry.transformToMatrix(combinedTransform), currentBrush);
-        drawImage(img, x, y, bgcolor, observer);
+        // Let a deferred image decode at no more than the size it will be drawn
+        Bitmap bitmap = toDrawable((img instanceof SkinJobDeferredImage)
+            ? ((SkinJobDeferredImage) img).sjGetAndroidBitmap(width, height)
+            : asAndroidBitmap(img));
+        if (bitmap == null) {
+          return false;
+        }
+        AffineTransform scaledTransform = new AffineTransform(combinedTransform);
+        scaledTransform.scale(width / (double) bitmap.getWidth(),
+            height / (double) bitmap.getHeight());
+        canvas.drawBitmap(bitmap, Geometry.transformToMatrix(scaledTransform), currentBrush);
         return false;
       }
     };
@@ -353,12 +481,61 @@ public class SkinJobGraphics extends Graphics2D {
     }
   }
 
+  /**
+   * Draws straight from the image's bitmap, without copying the source area. A deferred image is
+   * decoded at no more than the resolution the source area needs at its destination size.
+   */
   @Override
   public boolean drawImage(
       Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2,
       ImageObserver observer) {
-    // TODO
-    return false;
+    if (dx1 == dx2 || dy1 == dy2 || sx1 == sx2 || sy1 == sy2) {
+      return true;
+    }
+    Rect src = new Rect(Math.min(sx1, sx2), Math.min(sy1, sy2), Math.max(sx1, sx2),
+        Math.max(sy1, sy2));
+    RectF dst = new RectF(Math.min(dx1, dx2), Math.min(dy1, dy2), Math.max(dx1, dx2),
+        Math.max(dy1, dy2));
+    Bitmap source;
+    if (img instanceof SkinJobDeferredImage) {
+      SkinJobDeferredImage deferred = (SkinJobDeferredImage) img;
+      int imageWidth = deferred.getWidth(null);
+      int imageHeight = deferred.getHeight(null);
+      if (imageWidth <= 0 || imageHeight <= 0) {
+        return false;
+      }
+      source = deferred.sjGetAndroidBitmap(
+          (int) Math.ceil(imageWidth * dst.width() / src.width()),
+          (int) Math.ceil(imageHeight * dst.height() / src.height()));
+      if (source == null) {
+        return false;
+      }
+      // Map the source area onto the subsampled bitmap
+      RectF scaledSrc = new RectF(src);
+      Matrix toSampled = new Matrix();
+      toSampled.setScale(source.getWidth() / (float) imageWidth,
+          source.getHeight() / (float) imageHeight);
+      toSampled.mapRect(scaledSrc);
+      scaledSrc.round(src);
+    } else {
+      source = toDrawable(asAndroidBitmap(img));
+      if (source == null) {
+        return false;
+      }
+    }
+    // A source or destination given right-to-left or bottom-to-top mirrors the image
+    boolean mirrorX = (dx2 < dx1) != (sx2 < sx1);
+    boolean mirrorY = (dy2 < dy1) != (sy2 < sy1);
+    synchronized (this) {
+      int saveCount = canvas.save();
+      canvas.concat(Geometry.transformToMatrix(transform));
+      if (mirrorX || mirrorY) {
+        canvas.scale(mirrorX ? -1 : 1, mirrorY ? -1 : 1, dst.centerX(), dst.centerY());
+      }
+      canvas.drawBitmap(source, src, dst, brush);
+      canvas.restoreToCount(saveCount);
+    }
+    return true;
   }
 
   @Override
@@ -380,9 +557,12 @@ public class SkinJobGraphics extends Graphics2D {
   }
 
   public synchronized void setColor(int color) {
+    pen.setShader(null);
+    brush.setShader(null);
     pen.setColor(color);
     brush.setColor(color);
     this.color = color;
+    awtPaint = null;
   }
 
   @Override
@@ -391,7 +571,7 @@ public class SkinJobGraphics extends Graphics2D {
   }
 
   private synchronized void drawBitmap(Bitmap bitmap, AffineTransform transform) {
-    canvas.drawBitmap(bitmap, Geometry.transformToMatrix(transform), brush);
+    canvas.drawBitmap(toDrawable(bitmap), Geometry.transformToMatrix(transform), brush);
   }
 
   @Override
@@ -405,11 +585,59 @@ public class SkinJobGraphics extends Graphics2D {
   public void drawImage(
       BufferedImage img, BufferedImageOp op, int x, int y) {
     Rectangle2D filteredSize = op.getBounds2D(img);
-    BufferedImage filtered = new BufferedImage((int) filteredSize.getWidth(),
-        (int) filteredSize.getHeight(),
-        img.getType());
+    int width = (int) filteredSize.getWidth();
+    int height = (int) filteredSize.getHeight();
+    BufferedImage filtered = takeFilterDestination(width, height);
     op.filter(img, filtered);
-    drawImage(filtered, x, y, null);
+    // Unless a Picture is recording it, the bitmap is only needed until drawBitmap returns, so it
+    // goes straight back to the pool
+    boolean recording = bitmap == null;
+    Bitmap filteredBitmap = recording
+        ? Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+        : SkinJobBitmapPool.obtain(width, height);
+    try {
+      filteredBitmap.setPixels(getPixels(filtered), 0, width, 0, 0, width, height);
+      AffineTransform translated;
+      synchronized (this) {
+        translated = new AffineTransform(transform);
+      }
+      translated.translate(x, y);
+      drawBitmap(filteredBitmap, translated);
+    } finally {
+      if (!recording) {
+        SkinJobBitmapPool.release(filteredBitmap);
+      }
+      synchronized (this) {
+        filterDestination = filtered;
+      }
+    }
+  }
+
+  /**
+   * @return a transparent {@link BufferedImage#TYPE_INT_ARGB} image, which is the previous
+   * filter destination if that's the right size
+   */
+  private BufferedImage takeFilterDestination(int width, int height) {
+    BufferedImage destination;
+    synchronized (this) {
+      destination = filterDestination;
+      filterDestination = null;
+    }
+    if (destination == null || destination.getWidth() != width
+        || destination.getHeight() != height) {
+      return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+    // Not every op writes every pixel
+    Arrays.fill(getPixels(destination), 0);
+    return destination;
+  }
+
+  /**
+   * @return the pixels of a {@link BufferedImage#TYPE_INT_ARGB} image, one row after another, as
+   * {@link Bitmap#setPixels} expects them
+   */
+  private static int[] getPixels(BufferedImage image) {
+    return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
   }
 
   @Override
@@ -513,69 +741,65 @@ public class SkinJobGraphics extends Graphics2D {
     drawString(str, (float) x, (float) y);
   }
 
+  /**
+   * The text is laid out by {@link SkinJobStyledText}, which caches the layout, and drawn with the
+   * baseline of its first line at {@code y}. Other graphics may be drawing the same layout, so it's
+   * drawn while holding its lock.
+   */
   @Override
   public synchronized void drawString(AttributedCharacterIterator iterator, int x, int y) {
-    SpannableStringBuilder formattedText = new SpannableStringBuilder();
-    int charsWritten = 0;
-    for (char c = iterator.first(); c != CharacterIterator.DONE; c = iterator.next()) {
-      formattedText.append(c);
-      charsWritten++;
-      Map<Attribute, Object> attributes = iterator.getAttributes();
-      if (!attributes.isEmpty()) {
-        new TextAttributesDecoder(color)
-            .addAttributes(attributes)
-            .applyTo(formattedText, charsWritten - 1, charsWritten);
-      }
+    StaticLayout layout = SkinJobStyledText.getLayout(iterator, font, color);
+    if (layout.getLineCount() == 0) {
+      return;
     }
-    TextView formattedTextView = new TextView(SkinJobGlobals.getAndroidApplicationContext());
-    formattedTextView.setText(formattedText);
-    int right, bottom;
-    if (clip == null) {
-      right = canvas.getWidth();
-      bottom = canvas.getHeight();
-    } else {
-      Rectangle2D bounds = clip.getBounds2D();
-      right = (int) bounds.getMaxX();
-      bottom = (int) bounds.getMaxY();
+    int saveCount = canvas.save();
+    canvas.translate(x, y - layout.getLineBaseline(0));
+    synchronized (layout) {
+      layout.draw(canvas);
     }
-    formattedTextView.layout(x, y, right, bottom);
-    formattedTextView.draw(canvas);
+    canvas.restoreToCount(saveCount);
   }
 
   @Override
   public synchronized void translate(double tx, double ty) {
     transform = new AffineTransform(transform);
     transform.translate(tx, ty);
+    applyPaint();
   }
 
   @Override
   public synchronized void rotate(double theta) {
     transform = new AffineTransform(transform);
     transform.rotate(theta);
+    applyPaint();
   }
 
   @Override
   public synchronized void rotate(double theta, double x, double y) {
     transform = new AffineTransform(transform);
     transform.rotate(theta, x, y);
+    applyPaint();
   }
 
   @Override
   public synchronized void scale(double sx, double sy) {
     transform = new AffineTransform(transform);
     transform.scale(sx, sy);
+    applyPaint();
   }
 
   @Override
   public synchronized void shear(double shx, double shy) {
     transform = new AffineTransform(transform);
     transform.shear(shx, shy);
+    applyPaint();
   }
 
   @Override
   public synchronized void transform(AffineTransform tx) {
     transform = new AffineTransform(transform);
     transform.concatenate(tx);
+    applyPaint();
   }
 
   @Override
@@ -584,18 +808,48 @@ public class SkinJobGraphics extends Graphics2D {
   }
 
   @Override
-  public void setTransform(AffineTransform Tx) {
+  public synchronized void setTransform(AffineTransform Tx) {
     transform = Tx;
+    applyPaint();
   }
 
   @Override
-  public java.awt.Paint getPaint() {
-    return awtPaint;
+  public synchronized java.awt.Paint getPaint() {
+    return awtPaint == null ? getColor() : awtPaint;
   }
 
+  /**
+   * Gradient and texture paints are rendered by Android shaders; see {@link SkinJobPaints}. A null
+   * paint is ignored, as specified.
+   */
   @Override
-  public void setPaint(java.awt.Paint paint) {
+  public synchronized void setPaint(java.awt.Paint paint) {
+    if (paint == null) {
+      return;
+    }
+    if (paint instanceof Color) {
+      setColor((Color) paint);
+      return;
+    }
     awtPaint = paint;
+    applyPaint();
+  }
+
+  /**
+   * Sets the shader for {@link #awtPaint} on the pen and brush, since it depends on {@link
+   * #transform}. The shader supplies the color, so the paints are made opaque; otherwise their
+   * alpha would be multiplied into it.
+   */
+  private void applyPaint() {
+    if (awtPaint == null || awtPaint instanceof Color) {
+      return;
+    }
+    Shader shader = SkinJobPaints.getShader(awtPaint, transform,
+        new Rectangle(0, 0, canvas.getWidth(), canvas.getHeight()), renderingHints);
+    pen.setShader(shader);
+    brush.setShader(shader);
+    pen.setAlpha(255);
+    brush.setAlpha(255);
   }
 
   @Override
@@ -678,7 +932,12 @@ public class SkinJobGraphics extends Graphics2D {
 
   @Override
   public synchronized void clip(Shape s) {
+    if (clip == null || s == null) {
+      setClip(s);
+      return;
+    }
     clip = Geometry.getIntersection(clip, s);
+    clipCanvas(s);
   }
 
   @Override
@@ -690,6 +949,25 @@ public class SkinJobGraphics extends Graphics2D {
     return canvas;
   }
 
+  /**
+   * Draws a recorded picture, such as a {@link SkinJobDisplayList}'s, through the current transform
+   * and clip.
+   */
+  public synchronized void sjDrawPicture(Picture picture) {
+    int saveCount = canvas.save();
+    canvas.concat(Geometry.transformToMatrix(transform));
+    canvas.drawPicture(picture);
+    canvas.restoreToCount(saveCount);
+  }
+
+  /**
+   * @return true if an image drawn so far wasn't loaded yet, and so will be drawn once it is if
+   * this hasn't been disposed by then
+   */
+  public boolean sjHasPendingImages() {
+    return !pendingObservers.isEmpty();
+  }
+
   private abstract static class CancelableImageObserver implements ImageObserver {
     private final AtomicBoolean canceled = new AtomicBoolean(false);
     private volatile ImageObserver innerObserver;
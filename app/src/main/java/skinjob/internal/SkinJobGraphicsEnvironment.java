@@ -73,7 +73,7 @@ public class SkinJobGraphicsEnvironment extends GraphicsEnvironment {
 
   @Override
   public Graphics2D createGraphics(BufferedImage img) {
-    return new SkinJobGraphics(SkinJobUtil.asAndroidBitmap((Image) img));
+    return new SkinJobGraphics(SkinJobUtil.asAndroidBitmap((Image) img), img);
   }
 
   @Override
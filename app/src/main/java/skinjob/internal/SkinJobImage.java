@@ -5,15 +5,20 @@ import android.graphics.BitmapFactory;
 
 import java.awt.Graphics;
 import java.awt.Image;
+import java.awt.image.ColorModel;
 import java.awt.image.ImageObserver;
 import java.awt.image.ImageProducer;
+import java.awt.image.MemoryImageSource;
 
 /**
  * Created by cryoc on 2016-10-11.
+ * <p>
+ * If the bitmap is null (because it couldn't be decoded), the width and height are -1 and
+ * {@link #getSource()} produces no pixels, as for an AWT image whose loading failed.
  */
-public class SkinJobImage extends Image {
+public class SkinJobImage extends Image implements SkinJobAndroidBitmapWrapper {
   protected final Bitmap androidBitmap;
-  protected final ImageProducer source;
+  protected ImageProducer source;
 
   public SkinJobImage(String filename) {
     this(BitmapFactory.decodeFile(filename));
@@ -30,22 +35,35 @@ public class SkinJobImage extends Image {
 
   @Override
   public int getWidth(ImageObserver observer) {
-    return androidBitmap.getWidth();
+    return androidBitmap == null ? -1 : androidBitmap.getWidth();
   }
 
   @Override
   public int getHeight(ImageObserver observer) {
-    return androidBitmap.getHeight();
+    return androidBitmap == null ? -1 : androidBitmap.getHeight();
   }
 
+  /**
+   * If no source was given at construction, a {@link MemoryImageSource} is created from a copy of
+   * the bitmap's pixels on the first call.
+   */
   @Override
-  public ImageProducer getSource() {
+  public synchronized ImageProducer getSource() {
+    if (source == null) {
+      int width = Math.max(getWidth(null), 0);
+      int height = Math.max(getHeight(null), 0);
+      int[] pixels = new int[width * height];
+      if (androidBitmap != null) {
+        androidBitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+      }
+      source = new MemoryImageSource(width, height, ColorModel.getRGBdefault(), pixels, 0, width);
+    }
     return source;
   }
 
   @Override
   public Graphics getGraphics() {
-    if (androidBitmap.isMutable()) {
+    if (androidBitmap != null && androidBitmap.isMutable()) {
       return new SkinJobGraphics(androidBitmap);
     }
     return null;
@@ -55,4 +73,9 @@ public class SkinJobImage extends Image {
   public Object getProperty(String name, ImageObserver observer) {
     return null;
   }
+
+  @Override
+  public Bitmap sjGetAndroidBitmap() {
+    return androidBitmap;
+  }
 }
@@ -0,0 +1,178 @@
+package skinjob.internal;
+
+import android.graphics.Bitmap;
+
+import java.awt.Image;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import skinjob.SkinJobGlobals;
+
+/**
+ * Cache of decoded images shared by the {@link java.awt.Toolkit#getImage} methods. Its size is
+ * bounded by the total {@link Bitmap#getByteCount()} of its entries rather than by soft references,
+ * so that eviction is predictable and doesn't wait for a full garbage collection. When it exceeds
+ * {@link SkinJobGlobals#imageCacheMaxBytes}, the least recently used images are evicted. Evicted
+ * bitmaps aren't recycled, since callers may still be drawing them.
+ * <p>
+ * Concurrent requests for the same key that miss the cache share a single decode. The toolkit
+ * doesn't decode on request, though: it hands out a {@link SkinJobCachedImage} from {@link
+ * #getDeferred}, which only looks up or decodes its entry when it's prepared or drawn.
+ */
+public final class SkinJobImageCache {
+  private static final Object LOCK = new Object();
+  private static final LinkedHashMap<Object, SkinJobImage> entries
+      = new LinkedHashMap<>(16, 0.75f, true);
+  private static final Map<Object, FutureTask<Bitmap>> decodesInProgress = new HashMap<>();
+  /**
+   * The image last handed out for each key, for as long as it's reachable, so that every request
+   * for the same key gets the same image. Keys are strings, which the images refer to, so the
+   * values are weak as well.
+   */
+  private static final Map<Object, WeakReference<SkinJobCachedImage>> deferredImages
+      = new WeakHashMap<>();
+  private static long totalBytes;
+  private static long hits;
+  private static long misses;
+  private static long evictions;
+
+  /**
+   * Do not instantiate.
+   */
+  private SkinJobImageCache() {
+  }
+
+  /**
+   * @param key identifies the image; must have value semantics
+   * @param decoder called when the image is first prepared or drawn, if it isn't cached by then
+   * @return an image for the key that isn't decoded yet, the same one as long as it's reachable
+   */
+  static Image getDeferred(Object key, Callable<Bitmap> decoder) {
+    synchronized (LOCK) {
+      WeakReference<SkinJobCachedImage> reference = deferredImages.get(key);
+      SkinJobCachedImage image = (reference == null) ? null : reference.get();
+      if (image == null) {
+        image = new SkinJobCachedImage(key, decoder);
+        deferredImages.put(key, new WeakReference<>(image));
+      }
+      return image;
+    }
+  }
+
+  /**
+   * @return the cached image, or null if it isn't cached; doesn't count as a hit or miss
+   */
+  static SkinJobImage peek(Object key) {
+    synchronized (LOCK) {
+      return entries.get(key);
+    }
+  }
+
+  /**
+   * @param key identifies the image; must have value semantics
+   * @param decoder called on a miss; may return null if the image can't be decoded, in which case
+   * nothing is cached
+   * @return the cached image, or a newly decoded one
+   */
+  static SkinJobImage get(Object key, Callable<Bitmap> decoder) {
+    FutureTask<Bitmap> decode;
+    boolean ownDecode = false;
+    synchronized (LOCK) {
+      SkinJobImage cached = entries.get(key);
+      if (cached != null) {
+        hits++;
+        return cached;
+      }
+      misses++;
+      decode = decodesInProgress.get(key);
+      if (decode == null) {
+        decode = new FutureTask<>(decoder);
+        decodesInProgress.put(key, decode);
+        ownDecode = true;
+      }
+    }
+    if (ownDecode) {
+      decode.run();
+    }
+    Bitmap bitmap;
+    try {
+      bitmap = decode.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      bitmap = null;
+    } catch (ExecutionException e) {
+      bitmap = null;
+    }
+    synchronized (LOCK) {
+      if (ownDecode) {
+        decodesInProgress.remove(key);
+      }
+      SkinJobImage cached = entries.get(key);
+      if (cached != null) {
+        return cached;
+      }
+      SkinJobImage image = new SkinJobImage(bitmap);
+      if (bitmap != null) {
+        entries.put(key, image);
+        totalBytes += bitmap.getByteCount();
+        trimToSize(SkinJobGlobals.imageCacheMaxBytes);
+      }
+      return image;
+    }
+  }
+
+  private static void trimToSize(long maxBytes) {
+    Iterator<SkinJobImage> eldestFirst = entries.values().iterator();
+    // Never evict the entry that was just inserted, even if it alone exceeds the budget
+    while (totalBytes > maxBytes && entries.size() > 1) {
+      totalBytes -= eldestFirst.next().sjGetAndroidBitmap().getByteCount();
+      eldestFirst.remove();
+      evictions++;
+    }
+  }
+
+  /**
+   * Evicts every image.
+   */
+  public static void clear() {
+    synchronized (LOCK) {
+      evictions += entries.size();
+      entries.clear();
+      totalBytes = 0;
+    }
+  }
+
+  /**
+   * @return the total {@link Bitmap#getByteCount()} of the cached images
+   */
+  public static long getSizeBytes() {
+    synchronized (LOCK) {
+      return totalBytes;
+    }
+  }
+
+  public static long getHitCount() {
+    synchronized (LOCK) {
+      return hits;
+    }
+  }
+
+  public static long getMissCount() {
+    synchronized (LOCK) {
+      return misses;
+    }
+  }
+
+  public static long getEvictionCount() {
+    synchronized (LOCK) {
+      return evictions;
+    }
+  }
+}
@@ -0,0 +1,233 @@
+package skinjob.internal;
+
+import android.graphics.Bitmap;
+
+import java.awt.Image;
+import java.awt.image.ImageObserver;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import skinjob.SkinJobGlobals;
+
+/**
+ * Implements {@link java.awt.Toolkit#prepareImage} and {@link java.awt.Toolkit#checkImage}. Images
+ * that haven't been decoded yet ({@link SkinJobDeferredImage}, and {@link SkinJobCachedImage} until
+ * it's in the cache) are decoded on a pool of at most {@link SkinJobGlobals#imageDecoderThreads}
+ * daemon threads, so that many images can be prepared at once; every other SkinJob image is always
+ * fully loaded. Each image is decoded once no matter how many callers prepare it, and its observers
+ * are notified from the decoding thread: first with {@link ImageObserver#WIDTH} and {@link
+ * ImageObserver#HEIGHT} as soon as the header has been read (for a {@link SkinJobCachedImage}, once
+ * it's decoded), then with {@link ImageObserver#ALLBITS}, or with {@link ImageObserver#ERROR} and
+ * {@link ImageObserver#ABORT} if decoding fails.
+ */
+public final class SkinJobImageLoader {
+  private static final int LOADED_FLAGS
+      = ImageObserver.WIDTH | ImageObserver.HEIGHT | ImageObserver.PROPERTIES
+      | ImageObserver.ALLBITS;
+  private static final int FAILED_FLAGS = ImageObserver.ERROR | ImageObserver.ABORT;
+  private static final Object LOCK = new Object();
+  /**
+   * Loads in progress or finished, for images that haven't been garbage-collected. A load only
+   * refers to its image weakly, since a value that refers to its key keeps the entry alive.
+   */
+  private static final Map<Image, Load> loads = new WeakHashMap<>();
+  private static ThreadPoolExecutor decoderPool;
+
+  /**
+   * Do not instantiate.
+   */
+  private SkinJobImageLoader() {
+  }
+
+  private static boolean needsLoading(Image image) {
+    return image instanceof SkinJobDeferredImage
+        || (image instanceof SkinJobCachedImage && !((SkinJobCachedImage) image).sjIsLoaded());
+  }
+
+  /**
+   * @return true if the image is already fully loaded; otherwise, starts loading it if it isn't
+   * already being loaded, and returns false
+   */
+  public static boolean prepareImage(Image image, int width, int height, ImageObserver observer) {
+    if (!needsLoading(image)) {
+      return true;
+    }
+    Load load;
+    boolean start = false;
+    synchronized (LOCK) {
+      load = loads.get(image);
+      if (load == null) {
+        load = new Load(image, width, height);
+        loads.put(image, load);
+        start = true;
+      }
+    }
+    if (load.addObserverUnlessDone(observer)) {
+      if (start) {
+        getDecoderPool().execute(load);
+      }
+      return false;
+    }
+    return (load.getFlags() & ImageObserver.ALLBITS) != 0;
+  }
+
+  /**
+   * @return the {@link ImageObserver} flags for the information about the image that's available;
+   * 0 if loading hasn't started. If loading is in progress, the observer will be notified as more
+   * becomes available.
+   */
+  public static int checkImage(Image image, int width, int height, ImageObserver observer) {
+    if (!needsLoading(image)) {
+      return LOADED_FLAGS;
+    }
+    Load load;
+    synchronized (LOCK) {
+      load = loads.get(image);
+    }
+    if (load == null) {
+      return 0;
+    }
+    load.addObserverUnlessDone(observer);
+    return load.getFlags();
+  }
+
+  private static ThreadPoolExecutor getDecoderPool() {
+    synchronized (LOCK) {
+      int threads = Math.max(1, SkinJobGlobals.imageDecoderThreads);
+      if (decoderPool == null) {
+        decoderPool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new SkinJobDaemonThreadFactory("SkinJob image decoder"));
+        decoderPool.allowCoreThreadTimeOut(true);
+      } else if (decoderPool.getMaximumPoolSize() != threads) {
+        // Order matters: the core size may never exceed the maximum
+        if (threads > decoderPool.getMaximumPoolSize()) {
+          decoderPool.setMaximumPoolSize(threads);
+          decoderPool.setCorePoolSize(threads);
+        } else {
+          decoderPool.setCorePoolSize(threads);
+          decoderPool.setMaximumPoolSize(threads);
+        }
+      }
+      return decoderPool;
+    }
+  }
+
+  /**
+   * Decoding of one image, and the observers waiting for it.
+   */
+  private static final class Load implements Runnable {
+    private final WeakReference<Image> imageRef;
+    private final int width;
+    private final int height;
+    private final List<ImageObserver> observers = new ArrayList<>();
+    private int flags;
+
+    Load(Image image, int width, int height) {
+      imageRef = new WeakReference<>(image);
+      this.width = width;
+      this.height = height;
+    }
+
+    synchronized int getFlags() {
+      return flags;
+    }
+
+    /**
+     * @return false if loading has finished, in which case the observer isn't added
+     */
+    synchronized boolean addObserverUnlessDone(ImageObserver observer) {
+      if ((flags & (ImageObserver.ALLBITS | ImageObserver.ERROR)) != 0) {
+        return false;
+      }
+      if (observer != null && !observers.contains(observer)) {
+        observers.add(observer);
+      }
+      return true;
+    }
+
+    @Override
+    public void run() {
+      Image image = imageRef.get();
+      if (image == null) {
+        return; // Nobody can be waiting for it any more
+      }
+      if (image instanceof SkinJobCachedImage) {
+        loadCached((SkinJobCachedImage) image);
+      } else {
+        loadDeferred((SkinJobDeferredImage) image);
+      }
+    }
+
+    /**
+     * The size of a cached image is only known once it's decoded.
+     */
+    private void loadCached(SkinJobCachedImage image) {
+      Bitmap bitmap;
+      try {
+        bitmap = image.sjGetAndroidBitmap();
+      } catch (RuntimeException | OutOfMemoryError e) {
+        bitmap = null;
+      }
+      if (bitmap != null) {
+        update(image, LOADED_FLAGS, bitmap.getWidth(), bitmap.getHeight());
+      } else {
+        update(image, FAILED_FLAGS, -1, -1);
+      }
+    }
+
+    private void loadDeferred(SkinJobDeferredImage image) {
+      int imageWidth = image.getWidth(null);
+      int imageHeight = image.getHeight(null);
+      if (imageWidth <= 0 || imageHeight <= 0) {
+        update(image, FAILED_FLAGS, -1, -1);
+        return;
+      }
+      update(image, ImageObserver.WIDTH | ImageObserver.HEIGHT | ImageObserver.PROPERTIES,
+          imageWidth, imageHeight);
+      boolean decoded;
+      try {
+        decoded = (width > 0 && height > 0)
+            ? image.sjGetAndroidBitmap(width, height) != null
+            : image.sjGetAndroidBitmap() != null;
+      } catch (RuntimeException | OutOfMemoryError e) {
+        decoded = false;
+      }
+      if (decoded) {
+        update(image, LOADED_FLAGS, imageWidth, imageHeight);
+      } else {
+        update(image, FAILED_FLAGS, -1, -1);
+      }
+    }
+
+    /**
+     * Observers are called without holding any lock, since they typically lock a
+     * {@link java.awt.MediaTracker} that may in turn be waiting to call {@link #checkImage}.
+     */
+    private void update(Image image, int newFlags, int imageWidth, int imageHeight) {
+      List<ImageObserver> toNotify;
+      synchronized (this) {
+        flags |= newFlags;
+        toNotify = new ArrayList<>(observers);
+      }
+      List<ImageObserver> finished = new ArrayList<>();
+      for (ImageObserver observer : toNotify) {
+        if (!observer.imageUpdate(image, newFlags, 0, 0, imageWidth, imageHeight)) {
+          finished.add(observer);
+        }
+      }
+      synchronized (this) {
+        observers.removeAll(finished);
+        if ((flags & (ImageObserver.ALLBITS | ImageObserver.ERROR)) != 0) {
+          observers.clear();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,410 @@
+package skinjob.internal;
+
+import android.graphics.Bitmap;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static android.graphics.Bitmap.Config.ARGB_8888;
+
+/**
+ * Implements {@link Image#getScaledInstance(int, int, int)} for images whose pixels are directly
+ * available, by resampling their packed ARGB pixels rather than sending them through an {@link
+ * java.awt.image.ImageFilter}. Resampling is separable (rows, then columns) and works on
+ * premultiplied colors in 14-bit fixed point. Both passes are split into bands of rows that run in
+ * parallel when the image is large enough.
+ * <p>
+ * The hints choose the filter on each axis:
+ * <ul>
+ * <li>{@link Image#SCALE_DEFAULT} and {@link Image#SCALE_REPLICATE}: nearest neighbor, picking the
+ * same pixels as {@link java.awt.image.ReplicateScaleFilter}.</li>
+ * <li>{@link Image#SCALE_FAST}: bilinear.</li>
+ * <li>{@link Image#SCALE_AREA_AVERAGING}: area averaging, as {@link
+ * java.awt.image.AreaAveragingScaleFilter}.</li>
+ * <li>{@link Image#SCALE_SMOOTH}: area averaging when shrinking, bicubic (Catmull-Rom) when
+ * enlarging.</li>
+ * </ul>
+ */
+public final class SkinJobImageScaler {
+  private static final int WEIGHT_BITS = 14;
+  private static final int WEIGHT_ONE = 1 << WEIGHT_BITS;
+  private static final int WEIGHT_ROUNDING = WEIGHT_ONE >> 1;
+  /**
+   * Images with fewer output pixels than this are scaled on the calling thread.
+   */
+  private static final int MIN_PARALLEL_PIXELS = 1 << 16;
+  private static final int MIN_ROWS_PER_BAND = 16;
+  private static final int THREADS = Runtime.getRuntime().availableProcessors();
+  private static ExecutorService bandPool;
+
+  /**
+   * Do not instantiate.
+   */
+  private SkinJobImageScaler() {
+  }
+
+  /**
+   * @return a scaled copy of the image, or null if its pixels aren't directly available or the
+   * requested size is invalid, in which case the caller should fall back to an {@link
+   * java.awt.image.ImageFilter}
+   */
+  public static Image scale(Image image, int width, int height, int hints) {
+    int sourceWidth = image.getWidth(null);
+    int sourceHeight = image.getHeight(null);
+    if (sourceWidth <= 0 || sourceHeight <= 0 || width == 0 || height == 0) {
+      return null;
+    }
+    int[] pixels = getPixels(image, sourceWidth, sourceHeight);
+    if (pixels == null) {
+      return null;
+    }
+    if (width < 0 && height < 0) {
+      width = sourceWidth;
+      height = sourceHeight;
+    } else if (width < 0) {
+      width = Math.max(1, (int) ((long) sourceWidth * height / sourceHeight));
+    } else if (height < 0) {
+      height = Math.max(1, (int) ((long) sourceHeight * width / sourceWidth));
+    }
+    int[] scaled = scale(pixels, sourceWidth, sourceHeight, width, height, hints);
+    return new SkinJobImage(Bitmap.createBitmap(scaled, width, height, ARGB_8888));
+  }
+
+  private static int[] getPixels(Image image, int width, int height) {
+    if (image instanceof SkinJobAndroidBitmapWrapper) {
+      Bitmap bitmap = ((SkinJobAndroidBitmapWrapper) image).sjGetAndroidBitmap();
+      if (bitmap == null || bitmap.isRecycled()) {
+        return null;
+      }
+      int[] pixels = new int[width * height];
+      bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+      return pixels;
+    }
+    if (image instanceof BufferedImage) {
+      return ((BufferedImage) image).getRGB(0, 0, width, height, null, 0, width);
+    }
+    return null;
+  }
+
+  /**
+   * @param pixels non-premultiplied ARGB, row by row; not modified
+   * @return the scaled image as non-premultiplied ARGB, row by row
+   */
+  static int[] scale(
+      int[] pixels, int sourceWidth, int sourceHeight, int width, int height, int hints) {
+    final int[] premultiplied = new int[pixels.length];
+    for (int i = 0; i < pixels.length; i++) {
+      premultiplied[i] = premultiply(pixels[i]);
+    }
+    final Taps columns = new Taps(sourceWidth, width, chooseFilter(sourceWidth, width, hints));
+    final Taps rows = new Taps(sourceHeight, height, chooseFilter(sourceHeight, height, hints));
+    final int[] rowScaled = new int[width * sourceHeight];
+    final int[] result = new int[width * height];
+    final int sourceStride = sourceWidth;
+    final int stride = width;
+    runInBands(sourceHeight, width, new Band() {
+      @Override
+      public void run(int firstRow, int endRow) {
+        scaleRows(premultiplied, sourceStride, rowScaled, stride, columns, firstRow, endRow);
+      }
+    });
+    runInBands(height, width, new Band() {
+      @Override
+      public void run(int firstRow, int endRow) {
+        scaleColumns(rowScaled, result, stride, rows, firstRow, endRow);
+      }
+    });
+    for (int i = 0; i < result.length; i++) {
+      result[i] = unpremultiply(result[i]);
+    }
+    return result;
+  }
+
+  private static Filter chooseFilter(int sourceSize, int size, int hints) {
+    if ((hints & Image.SCALE_AREA_AVERAGING) != 0) {
+      return Filter.AREA_AVERAGE;
+    }
+    if ((hints & Image.SCALE_SMOOTH) != 0) {
+      return size < sourceSize ? Filter.AREA_AVERAGE : Filter.BICUBIC;
+    }
+    if ((hints & Image.SCALE_FAST) != 0) {
+      return Filter.BILINEAR;
+    }
+    return Filter.NEAREST;
+  }
+
+  private static void scaleRows(
+      int[] source, int sourceStride, int[] destination, int stride, Taps taps, int firstRow,
+      int endRow) {
+    for (int y = firstRow; y < endRow; y++) {
+      int sourceRow = y * sourceStride;
+      int row = y * stride;
+      for (int x = 0; x < stride; x++) {
+        int a = WEIGHT_ROUNDING;
+        int r = WEIGHT_ROUNDING;
+        int g = WEIGHT_ROUNDING;
+        int b = WEIGHT_ROUNDING;
+        int end = taps.start[x] + taps.count[x];
+        for (int t = taps.start[x]; t < end; t++) {
+          int pixel = source[sourceRow + taps.index[t]];
+          int weight = taps.weight[t];
+          a += (pixel >>> 24) * weight;
+          r += ((pixel >> 16) & 0xFF) * weight;
+          g += ((pixel >> 8) & 0xFF) * weight;
+          b += (pixel & 0xFF) * weight;
+        }
+        destination[row + x] = pack(a, r, g, b);
+      }
+    }
+  }
+
+  /**
+   * Each output row is accumulated across the whole row at once, so that the source is read
+   * sequentially.
+   */
+  private static void scaleColumns(
+      int[] source, int[] destination, int stride, Taps taps, int firstRow, int endRow) {
+    int[] a = new int[stride];
+    int[] r = new int[stride];
+    int[] g = new int[stride];
+    int[] b = new int[stride];
+    for (int y = firstRow; y < endRow; y++) {
+      for (int x = 0; x < stride; x++) {
+        a[x] = WEIGHT_ROUNDING;
+        r[x] = WEIGHT_ROUNDING;
+        g[x] = WEIGHT_ROUNDING;
+        b[x] = WEIGHT_ROUNDING;
+      }
+      int end = taps.start[y] + taps.count[y];
+      for (int t = taps.start[y]; t < end; t++) {
+        int sourceRow = taps.index[t] * stride;
+        int weight = taps.weight[t];
+        for (int x = 0; x < stride; x++) {
+          int pixel = source[sourceRow + x];
+          a[x] += (pixel >>> 24) * weight;
+          r[x] += ((pixel >> 16) & 0xFF) * weight;
+          g[x] += ((pixel >> 8) & 0xFF) * weight;
+          b[x] += (pixel & 0xFF) * weight;
+        }
+      }
+      int row = y * stride;
+      for (int x = 0; x < stride; x++) {
+        destination[row + x] = pack(a[x], r[x], g[x], b[x]);
+      }
+    }
+  }
+
+  /**
+   * Converts accumulated fixed-point channels back to a premultiplied pixel. Bicubic weights can
+   * be negative, so the results are clamped, and no color channel may exceed alpha.
+   */
+  private static int pack(int a, int r, int g, int b) {
+    a = clamp(a >> WEIGHT_BITS, 255);
+    r = clamp(r >> WEIGHT_BITS, a);
+    g = clamp(g >> WEIGHT_BITS, a);
+    b = clamp(b >> WEIGHT_BITS, a);
+    return (a << 24) | (r << 16) | (g << 8) | b;
+  }
+
+  private static int clamp(int value, int max) {
+    return value < 0 ? 0 : (value > max ? max : value);
+  }
+
+  private static int premultiply(int pixel) {
+    int a = pixel >>> 24;
+    if (a == 255) {
+      return pixel;
+    }
+    if (a == 0) {
+      return 0;
+    }
+    int r = (((pixel >> 16) & 0xFF) * a + 127) / 255;
+    int g = (((pixel >> 8) & 0xFF) * a + 127) / 255;
+    int b = ((pixel & 0xFF) * a + 127) / 255;
+    return (a << 24) | (r << 16) | (g << 8) | b;
+  }
+
+  private static int unpremultiply(int pixel) {
+    int a = pixel >>> 24;
+    if (a == 255) {
+      return pixel;
+    }
+    if (a == 0) {
+      return 0;
+    }
+    int half = a >> 1;
+    int r = Math.min(255, (((pixel >> 16) & 0xFF) * 255 + half) / a);
+    int g = Math.min(255, (((pixel >> 8) & 0xFF) * 255 + half) / a);
+    int b = Math.min(255, ((pixel & 0xFF) * 255 + half) / a);
+    return (a << 24) | (r << 16) | (g << 8) | b;
+  }
+
+  private static void runInBands(int rows, int rowLength, final Band band) {
+    int bands = Math.min(THREADS, rows / MIN_ROWS_PER_BAND);
+    if (bands <= 1 || (long) rows * rowLength < MIN_PARALLEL_PIXELS) {
+      band.run(0, rows);
+      return;
+    }
+    List<Callable<Void>> tasks = new ArrayList<>(bands);
+    for (int i = 0; i < bands; i++) {
+      final int firstRow = (int) ((long) rows * i / bands);
+      final int endRow = (int) ((long) rows * (i + 1) / bands);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          band.run(firstRow, endRow);
+          return null;
+        }
+      });
+    }
+    try {
+      for (Future<Void> result : getBandPool().invokeAll(tasks)) {
+        result.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while scaling an image", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  private static synchronized ExecutorService getBandPool() {
+    if (bandPool == null) {
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), new SkinJobDaemonThreadFactory("SkinJob scaler"));
+      pool.allowCoreThreadTimeOut(true);
+      bandPool = pool;
+    }
+    return bandPool;
+  }
+
+  private interface Band {
+    void run(int firstRow, int endRow);
+  }
+
+  private enum Filter {
+    NEAREST,
+    BILINEAR,
+    BICUBIC,
+    AREA_AVERAGE
+  }
+
+  /**
+   * For each output pixel along one axis, the source pixels it's computed from and their weights,
+   * which sum to {@link #WEIGHT_ONE}. Source indices past the edges are clamped.
+   */
+  private static final class Taps {
+    final int[] start;
+    final int[] count;
+    final int[] index;
+    final int[] weight;
+
+    Taps(int sourceSize, int size, Filter filter) {
+      start = new int[size];
+      count = new int[size];
+      double scale = sourceSize / (double) size;
+      int maxTaps;
+      switch (filter) {
+        case NEAREST:
+          maxTaps = 1;
+          break;
+        case BILINEAR:
+          maxTaps = 2;
+          break;
+        case BICUBIC:
+          maxTaps = 4;
+          break;
+        default:
+          maxTaps = (int) Math.ceil(scale) + 1;
+          break;
+      }
+      index = new int[size * maxTaps];
+      weight = new int[size * maxTaps];
+      double[] weights = new double[maxTaps];
+      int[] indices = new int[maxTaps];
+      for (int i = 0; i < size; i++) {
+        int n = 0;
+        double center = (i + 0.5) * scale - 0.5;
+        switch (filter) {
+          case NEAREST:
+            indices[n] = (int) ((i + 0.5) * scale);
+            weights[n++] = 1;
+            break;
+          case BILINEAR: {
+            int left = (int) Math.floor(center);
+            double fraction = center - left;
+            indices[n] = left;
+            weights[n++] = 1 - fraction;
+            indices[n] = left + 1;
+            weights[n++] = fraction;
+            break;
+          }
+          case BICUBIC: {
+            int left = (int) Math.floor(center);
+            double fraction = center - left;
+            for (int k = -1; k <= 2; k++) {
+              indices[n] = left + k;
+              weights[n++] = catmullRom(k - fraction);
+            }
+            break;
+          }
+          default: {
+            double from = i * scale;
+            double to = (i + 1) * scale;
+            for (int j = (int) Math.floor(from); j < to && n < maxTaps; j++) {
+              double overlap = Math.min(to, j + 1) - Math.max(from, j);
+              if (overlap > 0) {
+                indices[n] = j;
+                weights[n++] = overlap / scale;
+              }
+            }
+            break;
+          }
+        }
+        int offset = i * maxTaps;
+        start[i] = offset;
+        count[i] = n;
+        int total = 0;
+        int largest = offset;
+        for (int k = 0; k < n; k++) {
+          index[offset + k] = Math.max(0, Math.min(sourceSize - 1, indices[k]));
+          weight[offset + k] = (int) Math.round(weights[k] * WEIGHT_ONE);
+          total += weight[offset + k];
+          if (weight[offset + k] > weight[largest]) {
+            largest = offset + k;
+          }
+        }
+        // Absorb rounding error, so that flat areas keep exactly their color
+        weight[largest] += WEIGHT_ONE - total;
+      }
+    }
+
+    private static double catmullRom(double x) {
+      x = Math.abs(x);
+      if (x < 1) {
+        return (1.5 * x - 2.5) * x * x + 1;
+      }
+      if (x < 2) {
+        return ((-0.5 * x + 2.5) * x - 4) * x + 2;
+      }
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,238 @@
+package skinjob.internal;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.LinearGradient;
+import android.graphics.Matrix;
+import android.graphics.RadialGradient;
+import android.graphics.Shader;
+import android.graphics.Shader.TileMode;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.LinearGradientPaint;
+import java.awt.MultipleGradientPaint.CycleMethod;
+import java.awt.Paint;
+import java.awt.PaintContext;
+import java.awt.RadialGradientPaint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.TexturePaint;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import skinjob.util.Geometry;
+
+import static android.graphics.Bitmap.Config.ARGB_8888;
+
+/**
+ * Converts AWT {@link Paint}s into Android {@link Shader}s for {@link SkinJobGraphics}.
+ * <p>
+ * {@link GradientPaint}, {@link LinearGradientPaint}, {@link RadialGradientPaint} without a
+ * distinct focus point, and {@link TexturePaint} become a {@link LinearGradient}, {@link
+ * RadialGradient} or {@link BitmapShader}, so that they're rendered natively. Multiple-gradient
+ * paints are always interpolated in sRGB, even if they ask for linear RGB. Any other paint is
+ * rendered in software by its {@link PaintContext} into a bitmap covering the whole device, which
+ * then becomes a {@link BitmapShader}.
+ * <p>
+ * Since AWT paints are immutable, the shader for each paint is cached for as long as the paint is
+ * reachable, and reused as long as the transform (and, for software-rendered paints, the device
+ * bounds) are the same. Shaders are never modified once cached, so they can be shared between
+ * threads.
+ */
+final class SkinJobPaints {
+  private static final Map<Paint, CachedShader> cache = new WeakHashMap<>();
+
+  /**
+   * Do not instantiate.
+   */
+  private SkinJobPaints() {
+  }
+
+  /**
+   * @param transform the user-to-device transform that's applied to shapes before they're drawn
+   * @param deviceBounds area that the paint must cover, in device space
+   * @return a shader that renders the paint, or null if it's a {@link Color}
+   */
+  static Shader getShader(
+      Paint paint, AffineTransform transform, Rectangle deviceBounds, RenderingHints hints) {
+    if (paint == null || paint instanceof Color) {
+      return null;
+    }
+    synchronized (cache) {
+      CachedShader cached = cache.get(paint);
+      if (cached != null && cached.matches(transform, deviceBounds)) {
+        return cached.shader;
+      }
+    }
+    Shader shader = createNativeShader(paint, transform);
+    Rectangle rasterBounds = null;
+    if (shader == null) {
+      rasterBounds = new Rectangle(deviceBounds);
+      shader = createRasterShader(paint, transform, rasterBounds, hints);
+    }
+    synchronized (cache) {
+      cache.put(paint, new CachedShader(new AffineTransform(transform), rasterBounds, shader));
+    }
+    return shader;
+  }
+
+  private static Shader createNativeShader(Paint paint, AffineTransform transform) {
+    Shader shader;
+    AffineTransform localTransform = new AffineTransform(transform);
+    if (paint instanceof GradientPaint) {
+      GradientPaint gradient = (GradientPaint) paint;
+      Point2D p1 = gradient.getPoint1();
+      Point2D p2 = gradient.getPoint2();
+      if (p1.equals(p2)) {
+        return null;
+      }
+      shader = new LinearGradient((float) p1.getX(), (float) p1.getY(), (float) p2.getX(),
+          (float) p2.getY(), gradient.getColor1().getRGB(), gradient.getColor2().getRGB(),
+          gradient.isCyclic() ? TileMode.MIRROR : TileMode.CLAMP);
+    } else if (paint instanceof LinearGradientPaint) {
+      LinearGradientPaint gradient = (LinearGradientPaint) paint;
+      Point2D start = gradient.getStartPoint();
+      Point2D end = gradient.getEndPoint();
+      shader = new LinearGradient((float) start.getX(), (float) start.getY(),
+          (float) end.getX(), (float) end.getY(), toArgb(gradient.getColors()),
+          gradient.getFractions(), toTileMode(gradient.getCycleMethod()));
+      localTransform.concatenate(gradient.getTransform());
+    } else if (paint instanceof RadialGradientPaint) {
+      RadialGradientPaint gradient = (RadialGradientPaint) paint;
+      Point2D center = gradient.getCenterPoint();
+      if (!center.equals(gradient.getFocusPoint())) {
+        // Android's RadialGradient has no focus point
+        return null;
+      }
+      shader = new RadialGradient((float) center.getX(), (float) center.getY(),
+          gradient.getRadius(), toArgb(gradient.getColors()), gradient.getFractions(),
+          toTileMode(gradient.getCycleMethod()));
+      localTransform.concatenate(gradient.getTransform());
+    } else if (paint instanceof TexturePaint) {
+      TexturePaint texture = (TexturePaint) paint;
+      BufferedImage image = texture.getImage();
+      // The shader is cached and may be recorded into a Picture, so it mustn't share a pooled bitmap
+      Bitmap bitmap = SkinJobBitmapPool.copyIfPooled(toBitmap(image));
+      shader = new BitmapShader(bitmap, TileMode.REPEAT, TileMode.REPEAT);
+      Rectangle2D anchor = texture.getAnchorRect();
+      localTransform.translate(anchor.getX(), anchor.getY());
+      localTransform.scale(anchor.getWidth() / bitmap.getWidth(),
+          anchor.getHeight() / bitmap.getHeight());
+    } else {
+      return null;
+    }
+    shader.setLocalMatrix(Geometry.transformToMatrix(localTransform));
+    return shader;
+  }
+
+  /**
+   * Renders the paint over {@code deviceBounds} through its {@link PaintContext}.
+   */
+  private static Shader createRasterShader(
+      Paint paint, AffineTransform transform, Rectangle deviceBounds, RenderingHints hints) {
+    Rectangle2D userBounds;
+    try {
+      userBounds = transform.createInverse().createTransformedShape(deviceBounds).getBounds2D();
+    } catch (NoninvertibleTransformException e) {
+      userBounds = deviceBounds;
+    }
+    ColorModel rgb = ColorModel.getRGBdefault();
+    PaintContext context = paint.createContext(rgb, deviceBounds, userBounds, transform, hints);
+    int width = Math.max(1, deviceBounds.width);
+    int height = Math.max(1, deviceBounds.height);
+    int[] pixels;
+    try {
+      Raster raster = context.getRaster(deviceBounds.x, deviceBounds.y, width, height);
+      pixels = toArgb(raster, context.getColorModel(), width, height);
+    } finally {
+      context.dispose();
+    }
+    Shader shader = new BitmapShader(Bitmap.createBitmap(pixels, width, height, ARGB_8888),
+        TileMode.CLAMP, TileMode.CLAMP);
+    Matrix matrix = new Matrix();
+    matrix.setTranslate(deviceBounds.x, deviceBounds.y);
+    shader.setLocalMatrix(matrix);
+    return shader;
+  }
+
+  private static int[] toArgb(Raster raster, ColorModel colorModel, int width, int height) {
+    int[] pixels = new int[width * height];
+    int minX = raster.getMinX();
+    int minY = raster.getMinY();
+    if (ColorModel.getRGBdefault().equals(colorModel) && raster.getNumDataElements() == 1
+        && raster.getTransferType() == DataBuffer.TYPE_INT) {
+      // Each data element is already a packed ARGB pixel
+      raster.getDataElements(minX, minY, width, height, pixels);
+      return pixels;
+    }
+    Object pixel = null;
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        pixel = raster.getDataElements(minX + x, minY + y, pixel);
+        pixels[y * width + x] = colorModel.getRGB(pixel);
+      }
+    }
+    return pixels;
+  }
+
+  private static Bitmap toBitmap(BufferedImage image) {
+    if (image instanceof SkinJobAndroidBitmapWrapper) {
+      Bitmap bitmap = ((SkinJobAndroidBitmapWrapper) image).sjGetAndroidBitmap();
+      if (bitmap != null && !bitmap.isRecycled()) {
+        return bitmap;
+      }
+    }
+    int width = image.getWidth();
+    int height = image.getHeight();
+    return Bitmap.createBitmap(image.getRGB(0, 0, width, height, null, 0, width), width, height,
+        ARGB_8888);
+  }
+
+  private static int[] toArgb(Color[] colors) {
+    int[] argb = new int[colors.length];
+    for (int i = 0; i < colors.length; i++) {
+      argb[i] = colors[i].getRGB();
+    }
+    return argb;
+  }
+
+  private static TileMode toTileMode(CycleMethod cycleMethod) {
+    switch (cycleMethod) {
+      case REFLECT:
+        return TileMode.MIRROR;
+      case REPEAT:
+        return TileMode.REPEAT;
+      default:
+        return TileMode.CLAMP;
+    }
+  }
+
+  private static final class CachedShader {
+    private final AffineTransform transform;
+    /**
+     * Area that a software-rendered shader covers, or null for a native shader.
+     */
+    private final Rectangle rasterBounds;
+    final Shader shader;
+
+    CachedShader(AffineTransform transform, Rectangle rasterBounds, Shader shader) {
+      this.transform = transform;
+      this.rasterBounds = rasterBounds;
+      this.shader = shader;
+    }
+
+    boolean matches(AffineTransform transform, Rectangle deviceBounds) {
+      return this.transform.equals(transform)
+          && (rasterBounds == null || rasterBounds.equals(deviceBounds));
+    }
+  }
+}
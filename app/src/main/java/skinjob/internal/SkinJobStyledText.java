@@ -0,0 +1,159 @@
+package skinjob.internal;
+
+import android.text.Layout;
+import android.text.SpannableStringBuilder;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+import java.awt.Font;
+import java.text.AttributedCharacterIterator;
+import java.text.AttributedCharacterIterator.Attribute;
+import java.text.CharacterIterator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import skinjob.SkinJobGlobals;
+
+/**
+ * Lays out the text of an {@link AttributedCharacterIterator} as a {@link StaticLayout}, for {@link
+ * SkinJobGraphics#drawString(AttributedCharacterIterator, int, int)}. The text is converted one
+ * attribute run at a time, and the layouts of the most recently drawn {@link
+ * SkinJobGlobals#styledTextLayoutCacheSize} texts are cached, keyed on the text, its attribute runs,
+ * the font and the default color, so that text redrawn every frame is only laid out once.
+ * <p>
+ * A cached layout may be drawn by several graphics at once, and {@link Layout#draw} modifies the
+ * layout's paint as it goes, so a layout must only be drawn while holding its lock.
+ */
+final class SkinJobStyledText {
+  private static final Map<Key, StaticLayout> layouts = new LinkedHashMap<Key, StaticLayout>(
+      16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, StaticLayout> eldest) {
+      return size() > SkinJobGlobals.styledTextLayoutCacheSize;
+    }
+  };
+
+  /**
+   * Do not instantiate.
+   */
+  private SkinJobStyledText() {
+  }
+
+  /**
+   * @param color the color of text that has no {@link java.awt.font.TextAttribute#FOREGROUND}
+   * @return the laid-out text, as wide as it is, so that it isn't wrapped. Draw it while holding
+   * its lock.
+   */
+  static StaticLayout getLayout(AttributedCharacterIterator iterator, Font font, int color) {
+    StringBuilder text = new StringBuilder(iterator.getEndIndex() - iterator.getBeginIndex());
+    List<Run> runs = new ArrayList<>();
+    int begin = iterator.getBeginIndex();
+    for (char c = iterator.first(); c != CharacterIterator.DONE; ) {
+      int start = iterator.getIndex();
+      int limit = iterator.getRunLimit();
+      Map<Attribute, Object> attributes = iterator.getAttributes();
+      if (!attributes.isEmpty()) {
+        // The map may be a live view of the caller's text, which mustn't change a cached key
+        runs.add(new Run(start - begin, limit - begin, new HashMap<>(attributes)));
+      }
+      for (; iterator.getIndex() < limit; c = iterator.next()) {
+        text.append(c);
+      }
+    }
+    Key key = new Key(text.toString(), runs, font, color);
+    synchronized (layouts) {
+      StaticLayout layout = layouts.get(key);
+      if (layout != null) {
+        return layout;
+      }
+    }
+    StaticLayout layout = createLayout(key);
+    synchronized (layouts) {
+      layouts.put(key, layout);
+    }
+    return layout;
+  }
+
+  private static StaticLayout createLayout(Key key) {
+    SpannableStringBuilder formattedText = new SpannableStringBuilder(key.text);
+    for (Run run : key.runs) {
+      TextAttributesDecoder.applyTo(
+          run.attributes, key.color, formattedText, run.start, run.limit);
+    }
+    TextPaint paint = new TextPaint(key.font.sjGetAndroidPaint());
+    paint.setColor(key.color);
+    int width = (int) Math.ceil(Layout.getDesiredWidth(formattedText, paint));
+    return new StaticLayout(formattedText, paint, Math.max(1, width), Layout.Alignment.ALIGN_NORMAL,
+        1.0f, 0.0f, false);
+  }
+
+  /**
+   * Empties the layout cache.
+   */
+  static void clear() {
+    synchronized (layouts) {
+      layouts.clear();
+    }
+  }
+
+  /**
+   * Characters that share the same attributes, relative to the start of the text.
+   */
+  private static final class Run {
+    final int start;
+    final int limit;
+    final Map<Attribute, Object> attributes;
+
+    Run(int start, int limit, Map<Attribute, Object> attributes) {
+      this.start = start;
+      this.limit = limit;
+      this.attributes = attributes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Run)) {
+        return false;
+      }
+      Run other = (Run) o;
+      return start == other.start && limit == other.limit && attributes.equals(other.attributes);
+    }
+
+    @Override
+    public int hashCode() {
+      return (31 * start + limit) * 31 + attributes.hashCode();
+    }
+  }
+
+  private static final class Key {
+    final String text;
+    final List<Run> runs;
+    final Font font;
+    final int color;
+
+    Key(String text, List<Run> runs, Font font, int color) {
+      this.text = text;
+      this.runs = runs;
+      this.font = font;
+      this.color = color;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return color == other.color && text.equals(other.text) && font.equals(other.font)
+          && runs.equals(other.runs);
+    }
+
+    @Override
+    public int hashCode() {
+      return ((31 * text.hashCode() + runs.hashCode()) * 31 + font.hashCode()) * 31 + color;
+    }
+  }
+}
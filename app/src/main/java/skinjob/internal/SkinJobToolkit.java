@@ -1,7 +1,8 @@
 package skinjob.internal;
 
 import android.content.Context;
-import android.graphics.Typeface;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.media.Ringtone;
 import android.media.RingtoneManager;
 import android.net.Uri;
@@ -46,6 +47,7 @@ import java.awt.im.InputMethodHighlight;
 import java.awt.image.ColorModel;
 import java.awt.image.ImageObserver;
 import java.awt.image.ImageProducer;
+import java.awt.image.PixelGrabber;
 import java.awt.peer.ButtonPeer;
 import java.awt.peer.CanvasPeer;
 import java.awt.peer.CheckboxMenuItemPeer;
@@ -69,10 +71,16 @@ import java.awt.peer.ScrollbarPeer;
 import java.awt.peer.TextAreaPeer;
 import java.awt.peer.TextFieldPeer;
 import java.awt.peer.WindowPeer;
-import java.lang.reflect.Field;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
 
 import skinjob.SkinJobGlobals;
 import skinjob.internal.peer.SkinJobButtonPeer;
@@ -95,6 +103,7 @@ import skinjob.internal.peer.SkinJobScrollbarPeer;
 import skinjob.internal.peer.SkinJobTextFieldPeer;
 import skinjob.internal.peer.SkinJobWindowPeer;
 import sun.awt.DefaultMouseInfoPeer;
+import sun.font.SystemFontCatalog;
 
 /**
  * The Android implementation of {@link Toolkit}.
@@ -111,6 +120,7 @@ public class SkinJobToolkit extends Toolkit {
    */
   public SkinJobToolkit() {
     androidContext = getAndroidContext();
+    SystemFontCatalog.preload();
   }
 
   protected Context getAndroidContext() {
@@ -254,16 +264,8 @@ public class SkinJobToolkit extends Toolkit {
   }
 
   @Override
-  @SuppressWarnings("unchecked")
   public String[] getFontList() {
-    Class<Typeface> typefaceClass = Typeface.class;
-    try {
-      Field systemFontMapField = typefaceClass.getField("sSystemFontMap");
-      systemFontMapField.setAccessible(true);
-      return ((Map<String, ?>) systemFontMapField.get(null)).keySet().toArray(new String[0]);
-    } catch (Exception e) {
-      throw new RuntimeException(e);
-    }
+    return SystemFontCatalog.get().getTypefaceAliases().clone();
   }
 
   @Override
@@ -277,43 +279,115 @@ public class SkinJobToolkit extends Toolkit {
   }
 
   @Override
-  public Image getImage(String filename) {
-    return new SkinJobImage(filename);
+  public Image getImage(final String filename) {
+    return SkinJobImageCache.getDeferred(new File(filename).getAbsolutePath(),
+        new Callable<Bitmap>() {
+          @Override
+          public Bitmap call() {
+            return BitmapFactory.decodeFile(filename);
+          }
+        });
   }
 
+  /**
+   * Images are cached by {@link URL#toExternalForm()} rather than by {@link URL} itself, since
+   * {@link URL#equals(Object)} and {@link URL#hashCode()} may block on DNS lookups.
+   */
   @Override
-  public Image getImage(URL url) {
-    return null;
+  public Image getImage(final URL url) {
+    return SkinJobImageCache.getDeferred(url.toExternalForm(), new Callable<Bitmap>() {
+      @Override
+      public Bitmap call() {
+        return decodeUrl(url);
+      }
+    });
+  }
+
+  private static Bitmap decodeUrl(URL url) {
+    InputStream stream = null;
+    try {
+      stream = url.openStream();
+      return BitmapFactory.decodeStream(stream);
+    } catch (IOException e) {
+      return null;
+    } finally {
+      closeQuietly(stream);
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable == null) {
+      return;
+    }
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      // Everything needed has already been read
+    }
   }
 
   @Override
   public Image createImage(String filename) {
-    return null;
+    return new SkinJobDeferredImage(filename);
   }
 
+  /**
+   * The encoded image is downloaded immediately, but only decoded when it's drawn.
+   */
   @Override
   public Image createImage(URL url) {
-    return null;
+    InputStream stream = null;
+    try {
+      stream = url.openStream();
+      ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int bytesRead;
+      while ((bytesRead = stream.read(buffer)) >= 0) {
+        encoded.write(buffer, 0, bytesRead);
+      }
+      return new SkinJobDeferredImage(encoded.toByteArray(), 0, encoded.size());
+    } catch (IOException e) {
+      return new SkinJobImage((Bitmap) null);
+    } finally {
+      closeQuietly(stream);
+    }
   }
 
   @Override
   public boolean prepareImage(Image image, int width, int height, ImageObserver observer) {
-    return false;
+    return SkinJobImageLoader.prepareImage(image, width, height, observer);
   }
 
   @Override
   public int checkImage(Image image, int width, int height, ImageObserver observer) {
-    return 0;
+    return SkinJobImageLoader.checkImage(image, width, height, observer);
   }
 
   @Override
   public Image createImage(ImageProducer producer) {
-    return null;
+    // PixelGrabber only accepts an Image when the size isn't known in advance
+    PixelGrabber grabber = new PixelGrabber(new SkinJobImage(producer, null), 0, 0, -1, -1, true);
+    try {
+      grabber.grabPixels();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    int width = grabber.getWidth();
+    int height = grabber.getHeight();
+    Object pixels = grabber.getPixels();
+    Bitmap bitmap = null;
+    if ((grabber.getStatus() & ImageObserver.ALLBITS) != 0 && width > 0 && height > 0
+        && pixels instanceof int[]) {
+      bitmap = Bitmap.createBitmap((int[]) pixels, width, height, Bitmap.Config.ARGB_8888);
+    }
+    return new SkinJobImage(producer, bitmap);
   }
 
   @Override
   public Image createImage(byte[] imagedata, int imageoffset, int imagelength) {
-    return null;
+    // Copied because the caller may reuse the array before the image is decoded
+    return new SkinJobDeferredImage(
+        Arrays.copyOfRange(imagedata, imageoffset, imageoffset + imagelength), 0, imagelength);
   }
 
   @Override
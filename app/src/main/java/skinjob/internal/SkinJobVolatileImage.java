@@ -1,5 +1,7 @@
 package skinjob.internal;
 
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 
@@ -14,36 +16,103 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import skinjob.SkinJobGlobals;
 
-import static android.graphics.Bitmap.Config.ARGB_8888;
-
 /**
- * Created by chris on 11/25/2016.
+ * {@link VolatileImage} backed by a software {@link Bitmap}. Every {@link SkinJobGraphics} renders
+ * into a bitmap in system memory, so these images are never accelerated, and {@link
+ * #getCapabilities()} says so.
+ * <p>
+ * They are truly volatile, though: when Android reports memory pressure at or above {@link
+ * SkinJobGlobals#volatileImageTrimMemoryLevel}, every live instance drops its bitmap. {@link
+ * #contentsLost()} then returns true, and the next {@link #validate(GraphicsConfiguration)}
+ * allocates a blank bitmap and returns {@link #IMAGE_RESTORED}, so that callers using the standard
+ * validate/render/contentsLost loop redraw their contents. The bitmaps come from {@link
+ * SkinJobBitmapPool}, and return to it on {@link #flush()} or when the image is garbage-collected.
  */
-
 public class SkinJobVolatileImage extends VolatileImage implements SkinJobAndroidBitmapWrapper,
     Serializable {
   private static final long serialVersionUID = -5899239510088899399L;
+  private static final ImageCapabilities CAPABILITIES = new ImageCapabilities(false) {
+    @Override
+    public boolean isTrueVolatile() {
+      return true;
+    }
+  };
+  private static final Set<SkinJobVolatileImage> LIVE_INSTANCES
+      = Collections.newSetFromMap(new WeakHashMap<SkinJobVolatileImage, Boolean>());
+  private static boolean trimCallbacksRegistered;
   private final int width;
   private final int height;
-  private final ImageCapabilities caps;
-  private final int transparency;
   private transient Bitmap androidBitmap;
+  private transient boolean contentsLost;
 
   public SkinJobVolatileImage(int width, int height, ImageCapabilities caps, int transparency) {
     this.width = width;
     this.height = height;
-    this.caps = caps;
     this.transparency = transparency;
-    androidBitmap = Bitmap.createBitmap(width, height, ARGB_8888);
+    androidBitmap = SkinJobBitmapPool.obtain(width, height, this);
+    track(this);
+  }
+
+  /**
+   * @return whether {@link SkinJobVolatileImage} instances can be hardware-accelerated. Always false,
+   * since {@link SkinJobGraphics} can only render into bitmaps in system memory.
+   */
+  public static boolean isAccelerationSupported() {
+    return false;
+  }
+
+  private static void track(SkinJobVolatileImage image) {
+    synchronized (LIVE_INSTANCES) {
+      LIVE_INSTANCES.add(image);
+      if (!trimCallbacksRegistered) {
+        SkinJobGlobals.getAndroidApplicationContext().registerComponentCallbacks(
+            new TrimMemoryCallbacks());
+        trimCallbacksRegistered = true;
+      }
+    }
+  }
+
+  /**
+   * Discards the contents of every live instance, and empties {@link SkinJobBitmapPool}.
+   */
+  static void loseAllContents() {
+    List<SkinJobVolatileImage> images;
+    synchronized (LIVE_INSTANCES) {
+      images = new ArrayList<>(LIVE_INSTANCES);
+    }
+    for (SkinJobVolatileImage image : images) {
+      image.loseContents();
+    }
+    SkinJobBitmapPool.clear();
+  }
+
+  /**
+   * Drops the bitmap without recycling it, since a {@link SkinJobGraphics} may still be drawing into
+   * it; the garbage collector reclaims it once that's finished.
+   */
+  private synchronized void loseContents() {
+    if (androidBitmap != null) {
+      SkinJobBitmapPool.forget(androidBitmap);
+    }
+    androidBitmap = null;
+    contentsLost = true;
   }
 
+  /**
+   * The bitmap is copied, since this image's own bitmap returns to {@link SkinJobBitmapPool} on
+   * {@link #flush()}.
+   */
   @Override
-  public BufferedImage getSnapshot() {
-    return new SkinJobBufferedImage(androidBitmap);
+  public synchronized BufferedImage getSnapshot() {
+    return new SkinJobBufferedImage(sjGetAndroidBitmap().copy(Bitmap.Config.ARGB_8888, true));
   }
 
   @Override
@@ -57,26 +126,44 @@ public class SkinJobVolatileImage extends VolatileImage implements SkinJobAndroi
   }
 
   @Override
-  public Graphics2D createGraphics() {
-    return new SkinJobGraphics(androidBitmap);
+  public synchronized Graphics2D createGraphics() {
+    return new SkinJobGraphics(sjGetAndroidBitmap(), this);
   }
 
+  /**
+   * Returns the bitmap to {@link SkinJobBitmapPool}; the contents are lost.
+   */
   @Override
-  public int validate(GraphicsConfiguration gc) {
-    if (androidBitmap.isRecycled()) {
-      return VolatileImage.IMAGE_RESTORED;
+  public synchronized void flush() {
+    if (androidBitmap != null) {
+      SkinJobBitmapPool.release(androidBitmap);
+      androidBitmap = null;
     }
-    return VolatileImage.IMAGE_OK;
+    contentsLost = true;
   }
 
   @Override
-  public boolean contentsLost() {
-    return androidBitmap.isRecycled();
+  public synchronized int validate(GraphicsConfiguration gc) {
+    if (gc != null && !(gc instanceof SkinJobGraphicsConfiguration)) {
+      return IMAGE_INCOMPATIBLE;
+    }
+    if (androidBitmap == null || androidBitmap.isRecycled()) {
+      androidBitmap = SkinJobBitmapPool.obtain(width, height, this);
+      contentsLost = false;
+      return IMAGE_RESTORED;
+    }
+    contentsLost = false;
+    return IMAGE_OK;
+  }
+
+  @Override
+  public synchronized boolean contentsLost() {
+    return contentsLost || androidBitmap == null || androidBitmap.isRecycled();
   }
 
   @Override
   public ImageCapabilities getCapabilities() {
-    return caps;
+    return CAPABILITIES;
   }
 
   @Override
@@ -98,15 +185,23 @@ public class SkinJobVolatileImage extends VolatileImage implements SkinJobAndroi
     return VolatileImage.UndefinedProperty;
   }
 
+  /**
+   * If the contents have been lost, a blank bitmap is allocated but {@link #contentsLost()} keeps
+   * returning true until the next {@link #validate(GraphicsConfiguration)}.
+   */
   @Override
-  public Bitmap sjGetAndroidBitmap() {
+  public synchronized Bitmap sjGetAndroidBitmap() {
+    if (androidBitmap == null || androidBitmap.isRecycled()) {
+      androidBitmap = SkinJobBitmapPool.obtain(width, height, this);
+      contentsLost = true;
+    }
     return androidBitmap;
   }
 
-  private void writeObject(ObjectOutputStream out) throws IOException {
+  private synchronized void writeObject(ObjectOutputStream out) throws IOException {
     out.defaultWriteObject();
     ByteArrayOutputStream stream = new ByteArrayOutputStream();
-    androidBitmap.compress(
+    sjGetAndroidBitmap().compress(
         SkinJobGlobals.SERIAL_IMAGE_FORMAT, SkinJobGlobals.SERIAL_IMAGE_QUALITY, stream);
     out.writeObject(stream.toByteArray());
   }
@@ -120,5 +215,25 @@ public class SkinJobVolatileImage extends VolatileImage implements SkinJobAndroi
     } catch (ClassCastException e) {
       throw new IOException(e);
     }
+    track(this);
+  }
+
+  private static final class TrimMemoryCallbacks implements ComponentCallbacks2 {
+    @Override
+    public void onTrimMemory(int level) {
+      if (level >= SkinJobGlobals.volatileImageTrimMemoryLevel) {
+        loseAllContents();
+      }
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+      // No-op.
+    }
+
+    @Override
+    public void onLowMemory() {
+      loseAllContents();
+    }
   }
 }
@@ -1,11 +1,11 @@
 package skinjob.internal;
 
-import android.graphics.Paint;
 import android.graphics.Typeface;
 import android.text.SpannableStringBuilder;
 import android.text.Spanned;
 import android.text.style.AbsoluteSizeSpan;
 import android.text.style.BackgroundColorSpan;
+import android.text.style.CharacterStyle;
 import android.text.style.ForegroundColorSpan;
 import android.text.style.ScaleXSpan;
 import android.text.style.StrikethroughSpan;
@@ -16,112 +16,250 @@ import android.text.style.TypefaceSpan;
 import android.text.style.UnderlineSpan;
 import android.util.Log;
 
+import java.awt.Color;
 import java.awt.Font;
 import java.awt.font.NumericShaper;
 import java.awt.font.TextAttribute;
 import java.text.AttributedCharacterIterator;
 import java.text.AttributedCharacterIterator.Attribute;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 import skinjob.SkinJobGlobals;
+import sun.font.LRUCache;
 
 /**
  * Decodes the attribute map from a {@link Font} or {@link AttributedCharacterIterator}.
+ * <p>
+ * Each {@link TextAttribute} is looked up by identity in a table of decoders built once, rather
+ * than compared against every attribute in turn. The spans decoded from the most recently used
+ * {@link SkinJobGlobals#textSpanCacheSize} attribute maps are cached, and since spans hold no
+ * state of their own, the same span objects are applied every time the same attributes are.
  */
 public class TextAttributesDecoder {
   private static final String TAG = "TextAttributesDecoder";
   private static final double DIP_PER_POINT = 160.0 / 72.0; // for converting font sizes
-  private final ArrayList<Object> attributeSpans = new ArrayList<>();
-  private int fgColor;
-  private int bgColor;
-  private boolean swapColors;
-  private String fontFamily = SkinJobGlobals.defaultFont.getFamily();
-  private int fontStyle;
-
-  public TextAttributesDecoder(int defaultColor) {
-    fgColor = defaultColor;
-  }
+  private static final Map<Attribute, AttributeDecoder> DECODERS = new IdentityHashMap<>();
+  private static final LRUCache<Key, List<Object>> spanCache = new LRUCache<Key, List<Object>>() {
+    @Override
+    protected int getMaxSize() {
+      return SkinJobGlobals.textSpanCacheSize;
+    }
+  };
+  private static final Object UNDERLINE_SPAN = new UnderlineSpan();
+  private static final Object STRIKETHROUGH_SPAN = new StrikethroughSpan();
+  private static final Object SUBSCRIPT_SPAN = new SubscriptSpan();
+  private static final Object SUPERSCRIPT_SPAN = new SuperscriptSpan();
 
-  public TextAttributesDecoder addAttributes(
-      Map<? extends Attribute, ?> attributes) {
-    for (Attribute attribute : attributes.keySet()) {
-      if (attribute.equals(TextAttribute.BACKGROUND)) {
-        bgColor = ((Paint) attributes.get(attribute)).getColor();
-      } else if (attribute.equals(TextAttribute.BIDI_EMBEDDING)) {
+  static {
+    AttributeDecoder unsupported = new AttributeDecoder() {
+      @Override
+      void decode(TextAttributesDecoder decoder, Object value) {
         // TODO
-      } else if (attribute.equals(TextAttribute.CHAR_REPLACEMENT)) {
-        // TODO
-      } else if (attribute.equals(TextAttribute.FAMILY)) {
-        fontFamily = (String) attributes.get(attribute);
-      } else if (attribute.equals(TextAttribute.FONT)) {
-        addAttributes(((Font) attributes.get(attribute)).getAttributes());
-      } else if (attribute.equals(TextAttribute.FOREGROUND)) {
-        fgColor = ((Paint) attributes.get(attribute)).getColor();
-      } else if (attribute.equals(TextAttribute.INPUT_METHOD_HIGHLIGHT)) {
-        // TODO
-      } else if (attribute.equals(TextAttribute.INPUT_METHOD_UNDERLINE)) {
-        // Android doesn't support dotted, double or thick underlines.
-        attributeSpans.add(new UnderlineSpan());
-      } else if (attribute.equals(TextAttribute.JUSTIFICATION)) {
-        // TODO
-      } else if (attribute.equals(TextAttribute.KERNING)) {
-        // TODO
-      } else if (attribute.equals(TextAttribute.LIGATURES)) {
-        // TODO
-      } else if (attribute.equals(TextAttribute.NUMERIC_SHAPING)) {
-        Object value = attributes.get(attribute);
+      }
+    };
+    for (TextAttribute attribute : Arrays.asList(TextAttribute.BIDI_EMBEDDING,
+        TextAttribute.CHAR_REPLACEMENT, TextAttribute.INPUT_METHOD_HIGHLIGHT,
+        TextAttribute.JUSTIFICATION, TextAttribute.KERNING, TextAttribute.LIGATURES,
+        TextAttribute.RUN_DIRECTION, TextAttribute.TRACKING, TextAttribute.TRANSFORM)) {
+      DECODERS.put(attribute, unsupported);
+    }
+    DECODERS.put(TextAttribute.BACKGROUND, new AttributeDecoder() {
+      @Override
+      void decode(TextAttributesDecoder decoder, Object value) {
+        if (value instanceof Color) {
+          decoder.bgColor = ((Color) value).getRGB();
+        } else {
+          Log.w(TAG, "Ignoring TextAttribute.BACKGROUND value that's not a Color: " + value);
+        }
+      }
+    });
+    DECODERS.put(TextAttribute.FAMILY, new AttributeDecoder() {
+      @Override
+      void decode(TextAttributesDecoder decoder, Object value) {
+        decoder.fontFamily = (String) value;
+      }
+    });
+    DECODERS.put(TextAttribute.FONT, new AttributeDecoder() {
+      @Override
+      void decode(TextAttributesDecoder decoder, Object value) {
+        decoder.addAttributes(((Font) value).getAttributes());
+      }
+    });
+    DECODERS.put(TextAttribute.FOREGROUND, new AttributeDecoder() {
+      @Override
+      void decode(TextAttributesDecoder decoder, Object value) {
+        if (value instanceof Color) {
+          decoder.fgColor = ((Color) value).getRGB();
+        } else {
+          Log.w(TAG, "Ignoring TextAttribute.FOREGROUND value that's not a Color: " + value);
+        }
+      }
+    });
+    // Android doesn't support dotted, double or thick underlines.
+    AttributeDecoder underline = new AttributeDecoder() {
+      @Override
+      void decode(TextAttributesDecoder decoder, Object value) {
+        decoder.attributeSpans.add(UNDERLINE_SPAN);
+      }
+    };
+    DECODERS.put(TextAttribute.INPUT_METHOD_UNDERLINE, underline);
+    DECODERS.put(TextAttribute.UNDERLINE, underline);
+    DECODERS.put(TextAttribute.NUMERIC_SHAPING, new AttributeDecoder() {
+      @Override
+      void decode(TextAttributesDecoder decoder, Object value) {
         if (value instanceof NumericShaper) {
-          attributeSpans.add(value);
+          decoder.attributeSpans.add(value);
         } else {
           Log.w(
               TAG,
               "Ignoring TextAttribute.NUMERIC_SHAPING value that's not a NumericShaper: " + value);
         }
-      } else if (attribute.equals(TextAttribute.POSTURE)) {
-        if (attributes.get(attribute).equals(TextAttribute.POSTURE_OBLIQUE)) {
-          fontStyle |= Typeface.ITALIC;
+      }
+    });
+    DECODERS.put(TextAttribute.POSTURE, new AttributeDecoder() {
+      @Override
+      void decode(TextAttributesDecoder decoder, Object value) {
+        if (value.equals(TextAttribute.POSTURE_OBLIQUE)) {
+          decoder.fontStyle |= Typeface.ITALIC;
         } else {
-          fontStyle &= ~Typeface.ITALIC;
+          decoder.fontStyle &= ~Typeface.ITALIC;
         }
-      } else if (attribute.equals(TextAttribute.RUN_DIRECTION)) {
-        // TODO
-      } else if (attribute.equals(TextAttribute.SIZE)) {
-        attributeSpans.add(new AbsoluteSizeSpan((int) (
-            ((Number) attributes.get(attribute)).doubleValue() * DIP_PER_POINT), true));
-      } else if (attribute.equals(TextAttribute.STRIKETHROUGH)) {
+      }
+    });
+    DECODERS.put(TextAttribute.SIZE, new AttributeDecoder() {
+      @Override
+      void decode(TextAttributesDecoder decoder, Object value) {
+        decoder.attributeSpans.add(new AbsoluteSizeSpan((int) (
+            ((Number) value).doubleValue() * DIP_PER_POINT), true));
+      }
+    });
+    DECODERS.put(TextAttribute.STRIKETHROUGH, new AttributeDecoder() {
+      @Override
+      void decode(TextAttributesDecoder decoder, Object value) {
         // Android doesn't support dotted, double or thick strokes through.
-        attributeSpans.add(new StrikethroughSpan());
-      } else if (attribute.equals(TextAttribute.SUPERSCRIPT)) {
-        int value = (Integer) attributes.get(attribute);
-        if (value == TextAttribute.SUPERSCRIPT_SUB) {
-          attributeSpans.add(new SubscriptSpan());
-          break;
-        } else if (value == TextAttribute.SUPERSCRIPT_SUPER) {
-          attributeSpans.add(new SuperscriptSpan());
-          break;
+        decoder.attributeSpans.add(STRIKETHROUGH_SPAN);
+      }
+    });
+    DECODERS.put(TextAttribute.SUPERSCRIPT, new AttributeDecoder() {
+      @Override
+      void decode(TextAttributesDecoder decoder, Object value) {
+        int superscript = (Integer) value;
+        if (superscript == TextAttribute.SUPERSCRIPT_SUB) {
+          decoder.attributeSpans.add(SUBSCRIPT_SPAN);
+        } else if (superscript == TextAttribute.SUPERSCRIPT_SUPER) {
+          decoder.attributeSpans.add(SUPERSCRIPT_SPAN);
         } else {
-          Log.w(TAG, "Ignoring unknown TextAttribute.SUPERSCRIPT value " + value);
+          Log.w(TAG, "Ignoring unknown TextAttribute.SUPERSCRIPT value " + superscript);
         }
-      } else if (attribute.equals(TextAttribute.SWAP_COLORS)) {
-        swapColors = (Boolean) attributes.get(attribute);
-      } else if (attribute.equals(TextAttribute.TRACKING)) {
-        // TODO
-      } else if (attribute.equals(TextAttribute.TRANSFORM)) {
-        // TODO
-      } else if (attribute.equals(TextAttribute.UNDERLINE)) {
-        // Android doesn't support dotted, double or thick underlines.
-        attributeSpans.add(new UnderlineSpan());
-      } else if (attribute.equals(TextAttribute.WEIGHT)) {
-        if (((Number) attributes.get(attribute)).floatValue() >= SkinJobGlobals.boldThreshold) {
-          fontStyle |= Typeface.BOLD;
+      }
+    });
+    DECODERS.put(TextAttribute.SWAP_COLORS, new AttributeDecoder() {
+      @Override
+      void decode(TextAttributesDecoder decoder, Object value) {
+        decoder.swapColors = (Boolean) value;
+      }
+    });
+    DECODERS.put(TextAttribute.WEIGHT, new AttributeDecoder() {
+      @Override
+      void decode(TextAttributesDecoder decoder, Object value) {
+        if (((Number) value).floatValue() >= SkinJobGlobals.boldThreshold) {
+          decoder.fontStyle |= Typeface.BOLD;
         } else {
-          fontStyle &= ~Typeface.BOLD;
+          decoder.fontStyle &= ~Typeface.BOLD;
         }
-      } else if (attribute.equals(TextAttribute.WIDTH)) {
-        attributeSpans.add(new ScaleXSpan((Float) attributes.get(attribute)));
+      }
+    });
+    DECODERS.put(TextAttribute.WIDTH, new AttributeDecoder() {
+      @Override
+      void decode(TextAttributesDecoder decoder, Object value) {
+        decoder.attributeSpans.add(new ScaleXSpan((Float) value));
+      }
+    });
+  }
+
+  private final ArrayList<Object> attributeSpans = new ArrayList<>();
+  private int fgColor;
+  private int bgColor;
+  private boolean swapColors;
+  private String fontFamily;
+  private int fontStyle;
+
+  public TextAttributesDecoder(int defaultColor) {
+    this(defaultColor, SkinJobGlobals.defaultFont.getFamily());
+  }
+
+  private TextAttributesDecoder(int defaultColor, String defaultFamily) {
+    fgColor = defaultColor;
+    fontFamily = defaultFamily;
+  }
+
+  /**
+   * @param defaultColor the color of text that has no {@link TextAttribute#FOREGROUND}
+   * @return the spans that the attributes decode to, which are shared and must not be modified
+   */
+  public static List<Object> getSpans(Map<? extends Attribute, ?> attributes, int defaultColor) {
+    String defaultFamily = SkinJobGlobals.defaultFont.getFamily();
+    Key key = new Key(attributes, defaultColor, defaultFamily);
+    List<Object> spans = spanCache.get(key);
+    if (spans == null) {
+      spans = new TextAttributesDecoder(defaultColor, defaultFamily)
+          .addAttributes(attributes)
+          .getSpans();
+      // Copy the map, in case the caller modifies it later
+      spanCache.put(new Key(new HashMap<>(attributes), defaultColor, defaultFamily), spans);
+    }
+    return spans;
+  }
+
+  /**
+   * Applies the spans that the attributes decode to, reusing the cached ones.
+   *
+   * @param spannableStringBuilder A {@link SpannableStringBuilder} where the attributes are to be
+   * applied.
+   * @param start Index of the first character to apply the attributes to.
+   * @param end Index of the first character <i>after</i> the last one to apply the attributes to.
+   */
+  public static void applyTo(
+      Map<? extends Attribute, ?> attributes, int defaultColor,
+      SpannableStringBuilder spannableStringBuilder, int start, int end) {
+    setSpans(spannableStringBuilder, getSpans(attributes, defaultColor), start, end);
+  }
+
+  /**
+   * Sets each span on the text. A span object can only be set once on the same text, so a span
+   * that's already there, from another run with the same attributes, is wrapped first.
+   */
+  public static void setSpans(
+      SpannableStringBuilder spannableStringBuilder, Iterable<?> spans, int start, int end) {
+    for (Object span : spans) {
+      if (span instanceof CharacterStyle && spannableStringBuilder.getSpanStart(span) >= 0) {
+        span = CharacterStyle.wrap((CharacterStyle) span);
+      }
+      spannableStringBuilder.setSpan(span, start, end, Spanned.SPAN_INCLUSIVE_EXCLUSIVE);
+    }
+  }
+
+  /**
+   * @return the spans cached by {@link #getSpans}, for monitoring its hit rate
+   */
+  public static LRUCache<?, ?> getSpanCache() {
+    return spanCache;
+  }
+
+  public TextAttributesDecoder addAttributes(
+      Map<? extends Attribute, ?> attributes) {
+    for (Map.Entry<? extends Attribute, ?> entry : attributes.entrySet()) {
+      AttributeDecoder decoder = DECODERS.get(entry.getKey());
+      if (decoder == null) {
+        Log.w(TAG, "Ignoring unknown text attribute " + entry.getKey());
       } else {
-        Log.w(TAG, "Ignoring unknown text attribute " + attribute);
+        decoder.decode(this, entry.getValue());
       }
     }
     return this;
@@ -136,17 +274,50 @@ public class TextAttributesDecoder {
    * @param end Index of the first character <i>after</i> the last one to apply the attributes to.
    */
   public void applyTo(SpannableStringBuilder spannableStringBuilder, int start, int end) {
-    if (swapColors) {
-      int temp = fgColor;
-      fgColor = bgColor;
-      bgColor = temp;
+    setSpans(spannableStringBuilder, getSpans(), start, end);
+  }
+
+  private List<Object> getSpans() {
+    List<Object> spans = new ArrayList<>(attributeSpans.size() + 4);
+    spans.addAll(attributeSpans);
+    spans.add(new ForegroundColorSpan(swapColors ? bgColor : fgColor));
+    spans.add(new BackgroundColorSpan(swapColors ? fgColor : bgColor));
+    spans.add(new TypefaceSpan(fontFamily));
+    spans.add(new StyleSpan(fontStyle));
+    return Collections.unmodifiableList(spans);
+  }
+
+  /**
+   * Decodes the value of one {@link TextAttribute}.
+   */
+  private abstract static class AttributeDecoder {
+    abstract void decode(TextAttributesDecoder decoder, Object value);
+  }
+
+  private static final class Key {
+    final Map<? extends Attribute, ?> attributes;
+    final int defaultColor;
+    final String defaultFamily;
+
+    Key(Map<? extends Attribute, ?> attributes, int defaultColor, String defaultFamily) {
+      this.attributes = attributes;
+      this.defaultColor = defaultColor;
+      this.defaultFamily = defaultFamily;
     }
-    attributeSpans.add(new ForegroundColorSpan(fgColor));
-    attributeSpans.add(new BackgroundColorSpan(bgColor));
-    attributeSpans.add(new TypefaceSpan(fontFamily));
-    attributeSpans.add(new StyleSpan(fontStyle));
-    for (Object span : attributeSpans) {
-      spannableStringBuilder.setSpan(span, start, end, Spanned.SPAN_INCLUSIVE_EXCLUSIVE);
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return defaultColor == other.defaultColor && defaultFamily.equals(other.defaultFamily)
+          && attributes.equals(other.attributes);
+    }
+
+    @Override
+    public int hashCode() {
+      return (31 * attributes.hashCode() + defaultColor) * 31 + defaultFamily.hashCode();
     }
   }
 }
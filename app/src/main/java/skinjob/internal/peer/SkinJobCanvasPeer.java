@@ -3,6 +3,8 @@ package skinjob.internal.peer;
 import android.view.Display;
 import android.view.View;
 
+import java.awt.AWTException;
+import java.awt.BufferCapabilities;
 import java.awt.Canvas;
 import java.awt.Color;
 import java.awt.GraphicsConfiguration;
@@ -18,8 +20,21 @@ import skinjob.internal.SkinJobGraphicsDevice;
  * screen</i>.
  */
 public class SkinJobCanvasPeer extends SkinJobComponentPeerForView<View> implements CanvasPeer {
+  private final Canvas target;
+
   public SkinJobCanvasPeer(Canvas target) {
     super(target.sjAndroidWidget, SkinJobGraphicsConfiguration.getDefault());
+    this.target = target;
+  }
+
+  /**
+   * Frames are shown through the widget's surface if it's a {@link android.view.SurfaceView} or
+   * {@link android.view.TextureView}, or else as its background.
+   */
+  @Override
+  protected SkinJobFlipBuffers newFlipBuffers(int numBuffers, BufferCapabilities caps)
+      throws AWTException {
+    return new SkinJobFlipBuffers(androidWidget, target, numBuffers, caps);
   }
 
   @Override
@@ -7,12 +7,14 @@ import java.awt.AWTException;
 import java.awt.BufferCapabilities;
 import java.awt.BufferCapabilities.FlipContents;
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.GraphicsConfiguration;
 import java.awt.Image;
 import java.awt.ImageCapabilities;
+import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.event.PaintEvent;
 import java.awt.image.ColorModel;
@@ -25,6 +27,7 @@ import skinjob.SkinJobGlobals;
 import skinjob.internal.SkinJobBufferedImage;
 import skinjob.internal.SkinJobFontMetrics;
 import skinjob.internal.SkinJobGraphics;
+import skinjob.internal.SkinJobImageLoader;
 import skinjob.internal.SkinJobVolatileImage;
 
 import static java.awt.Transparency.TRANSLUCENT;
@@ -39,6 +42,11 @@ public abstract class SkinJobComponentPeer<T> implements ContainerPeer {
   protected GraphicsConfiguration graphicsConfiguration;
   protected volatile int foregroundColor = SkinJobGlobals.defaultForegroundColor;
   protected Font font = SkinJobGlobals.defaultFont;
+  /**
+   * Union of the update rectangles of the paint events posted since the last one was handled.
+   */
+  private final Rectangle damagedArea = new Rectangle();
+  private SkinJobFlipBuffers flipBuffers;
 
   public SkinJobComponentPeer(T androidWidget, GraphicsConfiguration configuration) {
     this.androidWidget = androidWidget;
@@ -62,12 +70,68 @@ public abstract class SkinJobComponentPeer<T> implements ContainerPeer {
 
   @Override
   public void handleEvent(AWTEvent e) {
-    // TODO
+    int id = e.getID();
+    if (id == PaintEvent.PAINT || id == PaintEvent.UPDATE) {
+      handlePaintEvent((PaintEvent) e);
+    }
+    // TODO: other events
   }
 
   @Override
   public void coalescePaintEvent(PaintEvent e) {
-    // No-op.
+    synchronized (damagedArea) {
+      addDamage(e.getUpdateRect());
+    }
+  }
+
+  private void addDamage(Rectangle r) {
+    if (damagedArea.isEmpty()) {
+      damagedArea.setBounds(r);
+    } else {
+      damagedArea.add(r);
+    }
+  }
+
+  /**
+   * Repaints only the area damaged since the last paint event was handled: that area of the Android
+   * widget is invalidated, and the AWT component paints with its graphics clipped to it.
+   */
+  protected void handlePaintEvent(PaintEvent e) {
+    Rectangle damaged;
+    synchronized (damagedArea) {
+      addDamage(e.getUpdateRect());
+      damaged = new Rectangle(damagedArea);
+      damagedArea.setBounds(0, 0, 0, 0);
+    }
+    if (damaged.isEmpty()) {
+      return;
+    }
+    invalidateAndroidWidget(damaged);
+    Graphics g = getGraphics();
+    if (g == null) {
+      return;
+    }
+    Component target = (Component) e.getSource();
+    synchronized (g) {
+      Shape oldClip = g.getClip();
+      g.clipRect(damaged.x, damaged.y, damaged.width, damaged.height);
+      try {
+        if (e.getID() == PaintEvent.UPDATE) {
+          target.update(g);
+        } else {
+          target.paint(g);
+        }
+      } finally {
+        g.setClip(oldClip);
+      }
+    }
+  }
+
+  /**
+   * Marks part of the Android widget as needing to be redrawn. May be called from any thread.
+   */
+  protected void invalidateAndroidWidget(Rectangle damaged) {
+    // No-op if the subclass can't implement.
   }
 
   @Override
@@ -118,20 +182,17 @@ public abstract class SkinJobComponentPeer<T> implements ContainerPeer {
 
   @Override
   public VolatileImage createVolatileImage(int width, int height) {
-    return new SkinJobVolatileImage(width, height, new ImageCapabilities(true), TRANSLUCENT);
+    return new SkinJobVolatileImage(width, height, new ImageCapabilities(false), TRANSLUCENT);
   }
 
   @Override
   public boolean prepareImage(Image img, int w, int h, ImageObserver o) {
-    // Image loading is synchronous on Android, so report that it's always already finished.
-    return true;
+    return SkinJobImageLoader.prepareImage(img, w, h, o);
   }
 
   @Override
   public int checkImage(Image img, int w, int h, ImageObserver o) {
-    // Image loading is synchronous on Android, so report that it's always already finished.
-    return ImageObserver.ALLBITS | ImageObserver.WIDTH | ImageObserver.HEIGHT
-        | ImageObserver.PROPERTIES;
+    return SkinJobImageLoader.checkImage(img, w, h, o);
   }
 
   @Override
@@ -139,25 +200,57 @@ public abstract class SkinJobComponentPeer<T> implements ContainerPeer {
     return graphicsConfiguration;
   }
 
+  /**
+   * Page flipping is only supported for {@link java.awt.Canvas} and {@link java.awt.Window}, whose
+   * peers override this.
+   *
+   * @throws AWTException always
+   */
+  protected SkinJobFlipBuffers newFlipBuffers(int numBuffers, BufferCapabilities caps)
+      throws AWTException {
+    throw new AWTException("Page flipping is not supported for this component");
+  }
+
   @Override
   public void createBuffers(int numBuffers, BufferCapabilities caps) throws AWTException {
-    // TODO
+    SkinJobFlipBuffers newBuffers = newFlipBuffers(numBuffers, caps);
+    SkinJobFlipBuffers oldBuffers;
+    synchronized (this) {
+      oldBuffers = flipBuffers;
+      flipBuffers = newBuffers;
+    }
+    if (oldBuffers != null) {
+      oldBuffers.destroy();
+    }
   }
 
   @Override
   public Image getBackBuffer() {
-    // TODO
-    return null;
+    return getFlipBuffers().getBackBuffer();
   }
 
   @Override
   public void flip(int x1, int y1, int x2, int y2, FlipContents flipAction) {
-    // TODO
+    getFlipBuffers().flip(x1, y1, x2, y2, flipAction);
   }
 
   @Override
   public void destroyBuffers() {
-    // TODO
+    SkinJobFlipBuffers oldBuffers;
+    synchronized (this) {
+      oldBuffers = flipBuffers;
+      flipBuffers = null;
+    }
+    if (oldBuffers != null) {
+      oldBuffers.destroy();
+    }
+  }
+
+  private synchronized SkinJobFlipBuffers getFlipBuffers() {
+    if (flipBuffers == null) {
+      throw new IllegalStateException("Buffers have not been created");
+    }
+    return flipBuffers;
   }
 
   @Override
@@ -189,18 +282,46 @@ public abstract class SkinJobComponentPeer<T> implements ContainerPeer {
     }
   }
 
+  @Override
+  public void setBounds(int x, int y, int width, int height, int op) {
+    if (!SkinJobLayoutBatch.deferBounds(this, x, y, width, height, op)) {
+      applyBounds(x, y, width, height, op);
+    }
+  }
+
+  /**
+   * Moves and/or resizes the Android widget. Called either by {@link #setBounds(int, int, int, int,
+   * int)} or when a {@link SkinJobLayoutBatch} is committed.
+   */
+  protected abstract void applyBounds(int x, int y, int width, int height, int op);
+
   @Override
   public void beginLayout() {
     // No-op.
   }
 
   @Override
-  public void beginValidate() {
+  public void endLayout() {
+    if (!SkinJobLayoutBatch.deferEndLayout(this)) {
+      applyEndLayout();
+    }
+  }
+
+  /**
+   * Tells the Android widget that its children have been laid out. Called either by {@link
+   * #endLayout()} or when a {@link SkinJobLayoutBatch} is committed.
+   */
+  protected void applyEndLayout() {
     // No-op.
   }
 
+  @Override
+  public void beginValidate() {
+    SkinJobLayoutBatch.begin();
+  }
+
   @Override
   public void endValidate() {
-    // No-op.
+    SkinJobLayoutBatch.end();
   }
 }
@@ -3,7 +3,6 @@ package skinjob.internal.peer;
 import android.content.res.ColorStateList;
 import android.os.Build;
 import android.text.SpannableStringBuilder;
-import android.text.Spanned;
 import android.util.DisplayMetrics;
 import android.view.View;
 
@@ -15,11 +14,13 @@ import java.awt.Graphics;
 import java.awt.GraphicsConfiguration;
 import java.awt.Insets;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.peer.ComponentPeer;
 
 import skinjob.SkinJobGlobals;
 import skinjob.internal.SkinJobGraphics;
 import skinjob.internal.SkinJobGraphicsConfiguration;
+import skinjob.internal.TextAttributesDecoder;
 import skinjob.util.SkinJobUtil;
 import sun.awt.CausedFocusEvent.Cause;
 
@@ -69,9 +70,8 @@ public abstract class SkinJobComponentPeerForView<T extends View> extends SkinJo
   protected synchronized void updateStyledText() {
     SpannableStringBuilder spannableStringBuilder = new SpannableStringBuilder(text);
     if (font != null) {
-      for (Object span : font.sjGetAndroidSpans()) {
-        spannableStringBuilder.setSpan(span, 0, text.length(), Spanned.SPAN_INCLUSIVE_EXCLUSIVE);
-      }
+      TextAttributesDecoder.setSpans(
+          spannableStringBuilder, font.sjGetAndroidSpans(), 0, text.length());
     }
     setTextInternal(spannableStringBuilder);
   }
@@ -92,11 +92,21 @@ public abstract class SkinJobComponentPeerForView<T extends View> extends SkinJo
 
   @Override
   public void paint(Graphics g) {
+    Rectangle clip = g.getClipBounds();
+    if (clip != null && clip.isEmpty()) {
+      return;
+    }
     androidWidget.draw(getCanvas(g));
   }
 
   @Override
-  public void setBounds(int x, int y, int width, int height, int op) {
+  protected void invalidateAndroidWidget(Rectangle damaged) {
+    androidWidget.postInvalidate(damaged.x, damaged.y, damaged.x + damaged.width,
+        damaged.y + damaged.height);
+  }
+
+  @Override
+  protected void applyBounds(int x, int y, int width, int height, int op) {
     SkinJobUtil.setBounds(androidWidget, x, y, width, height, op);
   }
 
@@ -166,7 +176,7 @@ public abstract class SkinJobComponentPeerForView<T extends View> extends SkinJo
   }
 
   @Override
-  public void endLayout() {
+  protected void applyEndLayout() {
     androidWidget.requestLayout();
   }
 
@@ -0,0 +1,358 @@
+package skinjob.internal.peer;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.Choreographer.FrameCallback;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+import android.view.TextureView;
+import android.view.View;
+
+import java.awt.AWTException;
+import java.awt.BufferCapabilities;
+import java.awt.BufferCapabilities.FlipContents;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.ImageCapabilities;
+import java.awt.Window;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import skinjob.internal.SkinJobVolatileImage;
+import sun.awt.image.VSyncedBSManager;
+
+import static java.awt.Transparency.OPAQUE;
+
+/**
+ * Back buffers and render thread behind a {@link Component.FlipBufferStrategy} for a {@link
+ * java.awt.Canvas} or {@link Window}. Each flip hands the current back buffer to a dedicated render
+ * thread, which shows it on the Android view, and rotates to the next back buffer, so that the
+ * application can draw the next frame while the last one is being shown. A {@link SurfaceView} or
+ * {@link TextureView} is drawn through its own surface; any other view shows the frames as its
+ * background.
+ * <p>
+ * The {@link FlipContents} of the capabilities are honored: after an {@link FlipContents#UNDEFINED}
+ * flip the next back buffer is whichever one is free; after a {@link FlipContents#BACKGROUND} flip
+ * it's also filled with the component's background color; after a {@link FlipContents#PRIOR} flip
+ * it's the buffer holding the frame shown before the flip, since there are then exactly two back
+ * buffers that take turns; and after a {@link FlipContents#COPIED} flip it's the same buffer,
+ * unchanged, once the render thread has finished showing it.
+ * <p>
+ * The buffers are bitmaps in system memory, so capabilities asking for accelerated buffers are
+ * refused, and {@link Component} falls back to unaccelerated ones.
+ * <p>
+ * The strategy that {@link VSyncedBSManager} allows to be v-synced is paced to the display: if a
+ * frame is still waiting to be shown, its next flip waits for that frame. Any other strategy's
+ * flips replace the waiting frame instead, so they only wait for a free back buffer.
+ */
+final class SkinJobFlipBuffers implements Runnable {
+  private static final ImageCapabilities BUFFER_CAPABILITIES = new ImageCapabilities(false);
+  /**
+   * How long to wait for a display frame before dropping one shown as a background, in case the
+   * view is never attached to a window.
+   */
+  private static final long FRAME_TIMEOUT_MS = 1000;
+  private final View view;
+  private final Component target;
+  private final FlipContents flipContents;
+  private final SkinJobVolatileImage[] backBuffers;
+  private final Object lock = new Object();
+  private final Thread renderThread;
+  /**
+   * Copy of the last frame, for a view that shows it as its background. Only accessed on the
+   * Android UI thread.
+   */
+  private Bitmap frontBuffer;
+  // Guarded by lock
+  private int current;
+  private Frame waiting;
+  private Frame showing;
+  private boolean destroyed;
+
+  /**
+   * @param view the view that the frames are shown on
+   * @param target the AWT {@link java.awt.Canvas} or {@link Window}, whose size and background the
+   * back buffers take on
+   * @throws AWTException if {@code caps} doesn't ask for page flipping, asks for accelerated buffers,
+   * or the target has no size
+   */
+  SkinJobFlipBuffers(View view, Component target, int numBuffers, BufferCapabilities caps)
+      throws AWTException {
+    if (caps == null || !caps.isPageFlipping()) {
+      throw new AWTException("Page flipping capabilities must be specified");
+    }
+    if (caps.getFrontBufferCapabilities().isAccelerated()
+        || caps.getBackBufferCapabilities().isAccelerated()) {
+      throw new AWTException("Accelerated buffers are not supported");
+    }
+    int width = target.getWidth();
+    int height = target.getHeight();
+    if (width <= 0 || height <= 0) {
+      throw new AWTException("Can't create buffers for an empty component");
+    }
+    this.view = view;
+    this.target = target;
+    flipContents = caps.getFlipContents();
+    // One of the buffers is the front buffer, which belongs to the view. Two back buffers that take
+    // turns each hold the frame before the other's, as PRIOR requires
+    backBuffers = new SkinJobVolatileImage[FlipContents.PRIOR.equals(flipContents) ? 2
+        : Math.max(1, numBuffers - 1)];
+    for (int i = 0; i < backBuffers.length; i++) {
+      backBuffers[i] = new SkinJobVolatileImage(width, height, BUFFER_CAPABILITIES, OPAQUE);
+      fillWithBackground(backBuffers[i]);
+    }
+    renderThread = new Thread(this, "SkinJob flip buffers for " + target.getName());
+    renderThread.setDaemon(true);
+    renderThread.start();
+  }
+
+  SkinJobVolatileImage getBackBuffer() {
+    synchronized (lock) {
+      if (destroyed) {
+        throw new IllegalStateException("Buffers have been destroyed");
+      }
+      return backBuffers[current];
+    }
+  }
+
+  /**
+   * Shows the given area of the back buffer, then moves to the next back buffer as specified by
+   * {@code flipAction}.
+   */
+  void flip(int x1, int y1, int x2, int y2, FlipContents flipAction) {
+    if (flipAction == null) {
+      flipAction = flipContents;
+    }
+    boolean vsync = VSyncedBSManager.vsyncAllowed(getBufferStrategy());
+    int next;
+    try {
+      synchronized (lock) {
+        if (destroyed) {
+          throw new IllegalStateException("Buffers have been destroyed");
+        }
+        if (vsync) {
+          while (waiting != null && !destroyed) {
+            lock.wait();
+          }
+        }
+        waiting = new Frame(current, new Rect(x1, y1, x2, y2));
+        lock.notifyAll();
+        next = FlipContents.COPIED.equals(flipAction) ? current
+            : (current + 1) % backBuffers.length;
+        while (isInUse(next) && !destroyed) {
+          lock.wait();
+        }
+        current = next;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    if (FlipContents.BACKGROUND.equals(flipAction)) {
+      fillWithBackground(backBuffers[next]);
+    }
+  }
+
+  /**
+   * Stops the render thread once it has finished showing the current frame, and releases the back
+   * buffers.
+   */
+  void destroy() {
+    synchronized (lock) {
+      destroyed = true;
+      waiting = null;
+      lock.notifyAll();
+      while (showing != null) {
+        try {
+          lock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+    for (SkinJobVolatileImage buffer : backBuffers) {
+      buffer.flush();
+    }
+  }
+
+  @Override
+  public void run() {
+    while (true) {
+      Frame frame;
+      synchronized (lock) {
+        while (waiting == null && !destroyed) {
+          try {
+            lock.wait();
+          } catch (InterruptedException e) {
+            // Only destroy() stops the render thread
+          }
+        }
+        if (destroyed) {
+          return;
+        }
+        frame = waiting;
+        waiting = null;
+        showing = frame;
+        lock.notifyAll();
+      }
+      try {
+        show(backBuffers[frame.buffer].sjGetAndroidBitmap(), frame.area);
+      } finally {
+        synchronized (lock) {
+          showing = null;
+          lock.notifyAll();
+        }
+      }
+    }
+  }
+
+  /**
+   * Must hold {@link #lock}.
+   */
+  private boolean isInUse(int buffer) {
+    return (waiting != null && waiting.buffer == buffer)
+        || (showing != null && showing.buffer == buffer);
+  }
+
+  private BufferStrategy getBufferStrategy() {
+    return (target instanceof Window) ? ((Window) target).getBufferStrategy()
+        : ((java.awt.Canvas) target).getBufferStrategy();
+  }
+
+  private void fillWithBackground(SkinJobVolatileImage buffer) {
+    Color background = target.getBackground();
+    buffer.sjGetAndroidBitmap().eraseColor(
+        background == null ? Color.WHITE.getRGB() : background.getRGB());
+  }
+
+  /**
+   * Called on the render thread. Drawing to a surface blocks until the surface has a free buffer,
+   * which paces the render thread to the display.
+   */
+  private void show(Bitmap frame, Rect area) {
+    if (view instanceof SurfaceView) {
+      SurfaceHolder holder = ((SurfaceView) view).getHolder();
+      if (holder.getSurface() == null || !holder.getSurface().isValid()) {
+        return; // Not visible, so the frame is dropped
+      }
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+        // A hardware canvas has no dirty area, which doesn't matter since the whole frame is drawn
+        Surface surface = holder.getSurface();
+        Canvas canvas = surface.lockHardwareCanvas();
+        try {
+          canvas.drawBitmap(frame, 0, 0, null);
+        } finally {
+          surface.unlockCanvasAndPost(canvas);
+        }
+        return;
+      }
+      // The locked area may be larger than requested, so the whole frame is drawn through its clip
+      Canvas canvas = holder.lockCanvas(area);
+      if (canvas != null) {
+        try {
+          canvas.drawBitmap(frame, 0, 0, null);
+        } finally {
+          holder.unlockCanvasAndPost(canvas);
+        }
+      }
+    } else if (view instanceof TextureView) {
+      TextureView textureView = (TextureView) view;
+      if (!textureView.isAvailable()) {
+        return;
+      }
+      Canvas canvas = textureView.lockCanvas(area);
+      if (canvas != null) {
+        try {
+          canvas.drawBitmap(frame, 0, 0, null);
+        } finally {
+          textureView.unlockCanvasAndPost(canvas);
+        }
+      }
+    } else {
+      showAsBackground(frame, area);
+    }
+  }
+
+  /**
+   * Copies the frame into {@link #frontBuffer} on the UI thread, then waits for the next display
+   * frame so that the render thread is paced the same way as for a surface. The back buffer isn't
+   * given back until the copy has either finished or been canceled, since the application may draw
+   * into it again as soon as it's free.
+   */
+  private void showAsBackground(final Bitmap frame, final Rect area) {
+    final CountDownLatch nextFrame = new CountDownLatch(1);
+    final CountDownLatch copied = new CountDownLatch(1);
+    // Set by whichever comes first: the copy starting, or the render thread giving up on it
+    final AtomicBoolean claimed = new AtomicBoolean(false);
+    boolean posted = view.post(new Runnable() {
+      @Override
+      public void run() {
+        if (!claimed.compareAndSet(false, true)) {
+          return; // Dropped, so the back buffer may already hold another frame
+        }
+        try {
+          copyToFrontBuffer(frame, area);
+        } finally {
+          copied.countDown();
+        }
+        Choreographer.getInstance().postFrameCallback(new FrameCallback() {
+          @Override
+          public void doFrame(long frameTimeNanos) {
+            nextFrame.countDown();
+          }
+        });
+      }
+    });
+    if (!posted) {
+      return; // The view's UI thread has quit
+    }
+    try {
+      nextFrame.await(FRAME_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      // Only destroy() stops the render thread, and it waits for this frame
+    }
+    if (!claimed.compareAndSet(false, true)) {
+      // The copy has started, and takes far less than a frame
+      while (true) {
+        try {
+          copied.await();
+          return;
+        } catch (InterruptedException e) {
+          // As above
+        }
+      }
+    }
+  }
+
+  /**
+   * Called on the UI thread.
+   */
+  private void copyToFrontBuffer(Bitmap frame, Rect area) {
+    if (frontBuffer == null || frontBuffer.getWidth() != frame.getWidth()
+        || frontBuffer.getHeight() != frame.getHeight()) {
+      frontBuffer = frame.copy(Bitmap.Config.ARGB_8888, true);
+      view.setBackground(new BitmapDrawable(view.getResources(), frontBuffer));
+    } else {
+      new Canvas(frontBuffer).drawBitmap(frame, area, area, null);
+      view.invalidate(area);
+    }
+  }
+
+  private static final class Frame {
+    final int buffer;
+    final Rect area;
+
+    Frame(int buffer, Rect area) {
+      this.buffer = buffer;
+      this.area = area;
+    }
+  }
+}
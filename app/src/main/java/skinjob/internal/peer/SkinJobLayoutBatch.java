@@ -0,0 +1,188 @@
+package skinjob.internal.peer;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import skinjob.SkinJobGlobals;
+
+import static java.awt.peer.ComponentPeer.NO_EMBEDDED_CHECK;
+import static java.awt.peer.ComponentPeer.SET_BOUNDS;
+import static java.awt.peer.ComponentPeer.SET_CLIENT_SIZE;
+import static java.awt.peer.ComponentPeer.SET_LOCATION;
+import static java.awt.peer.ComponentPeer.SET_SIZE;
+
+/**
+ * Transaction collecting the changes to the Android widgets that {@link SkinJobComponentPeer}
+ * implementations receive during one {@link java.awt.Container#validate()}. Only the last location
+ * and size given to each peer are kept, and each peer's layout is ended at most once, so when
+ * hundreds of components move together, each Android widget is updated once rather than once per
+ * intermediate layout.
+ * <p>
+ * The transaction is committed when the outermost validation finishes: immediately, or on the
+ * Android UI thread if {@link SkinJobGlobals#asyncLayout} is set.
+ */
+final class SkinJobLayoutBatch implements Runnable {
+  private static final Object LOCK = new Object();
+  private static SkinJobLayoutBatch current;
+  private static int validationDepth;
+  private static Handler uiThreadHandler;
+
+  private final Map<SkinJobComponentPeer<?>, PendingBounds> bounds = new LinkedHashMap<>();
+  private final Set<SkinJobComponentPeer<?>> endedLayouts = new LinkedHashSet<>();
+
+  private SkinJobLayoutBatch() {
+  }
+
+  /**
+   * Called when a validation starts. Validations may be nested; only the outermost one opens a
+   * transaction.
+   */
+  static void begin() {
+    synchronized (LOCK) {
+      if (validationDepth++ == 0) {
+        current = new SkinJobLayoutBatch();
+      }
+    }
+  }
+
+  /**
+   * Called when a validation finishes. If this ends the outermost validation, the transaction is
+   * committed.
+   */
+  static void end() {
+    SkinJobLayoutBatch batch;
+    synchronized (LOCK) {
+      if (validationDepth == 0 || --validationDepth > 0) {
+        return;
+      }
+      batch = current;
+      current = null;
+    }
+    if (batch == null || batch.isEmpty()) {
+      return;
+    }
+    Looper mainLooper = Looper.getMainLooper();
+    if (!SkinJobGlobals.asyncLayout || Looper.myLooper() == mainLooper) {
+      batch.run();
+    } else {
+      synchronized (LOCK) {
+        if (uiThreadHandler == null) {
+          uiThreadHandler = new Handler(mainLooper);
+        }
+      }
+      uiThreadHandler.post(batch);
+    }
+  }
+
+  /**
+   * @return true if a transaction is open and the new bounds were added to it; false if the caller
+   * should apply them itself.
+   */
+  static boolean deferBounds(
+      SkinJobComponentPeer<?> peer, int x, int y, int width, int height, int op) {
+    synchronized (LOCK) {
+      if (current == null) {
+        return false;
+      }
+      PendingBounds pending = current.bounds.get(peer);
+      if (pending == null) {
+        pending = new PendingBounds();
+        current.bounds.put(peer, pending);
+      }
+      pending.merge(x, y, width, height, op);
+      return true;
+    }
+  }
+
+  /**
+   * @return true if a transaction is open and the end of the peer's layout was added to it; false
+   * if the caller should apply it itself.
+   */
+  static boolean deferEndLayout(SkinJobComponentPeer<?> peer) {
+    synchronized (LOCK) {
+      if (current == null) {
+        return false;
+      }
+      current.endedLayouts.add(peer);
+      return true;
+    }
+  }
+
+  private boolean isEmpty() {
+    return bounds.isEmpty() && endedLayouts.isEmpty();
+  }
+
+  @Override
+  public void run() {
+    for (Map.Entry<SkinJobComponentPeer<?>, PendingBounds> entry : bounds.entrySet()) {
+      entry.getValue().applyTo(entry.getKey());
+    }
+    for (SkinJobComponentPeer<?> peer : endedLayouts) {
+      peer.applyEndLayout();
+    }
+  }
+
+  /**
+   * The net effect of all the {@code setBounds} calls a peer received during a transaction.
+   */
+  private static final class PendingBounds {
+    private boolean locationSet;
+    private int x;
+    private int y;
+    /**
+     * {@link java.awt.peer.ComponentPeer#SET_SIZE}, {@link java.awt.peer.ComponentPeer#SET_CLIENT_SIZE},
+     * or 0 if the size hasn't been set.
+     */
+    private int sizeOp;
+    private int width;
+    private int height;
+
+    void merge(int x, int y, int width, int height, int op) {
+      switch (op & ~NO_EMBEDDED_CHECK) {
+        case SET_LOCATION:
+          setLocation(x, y);
+          break;
+        case SET_SIZE:
+        case SET_CLIENT_SIZE:
+          setSize(width, height, op & ~NO_EMBEDDED_CHECK);
+          break;
+        case SET_BOUNDS:
+          setLocation(x, y);
+          setSize(width, height, SET_SIZE);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown setBounds operation " + op);
+      }
+    }
+
+    private void setLocation(int x, int y) {
+      locationSet = true;
+      this.x = x;
+      this.y = y;
+    }
+
+    private void setSize(int width, int height, int sizeOp) {
+      this.sizeOp = sizeOp;
+      this.width = width;
+      this.height = height;
+    }
+
+    void applyTo(SkinJobComponentPeer<?> peer) {
+      if (locationSet && sizeOp == SET_SIZE) {
+        peer.applyBounds(x, y, width, height, SET_BOUNDS);
+        return;
+      }
+      if (locationSet) {
+        peer.applyBounds(x, y, width, height, SET_LOCATION);
+      }
+      if (sizeOp != 0) {
+        peer.applyBounds(x, y, width, height, sizeOp);
+      }
+    }
+  }
+}
@@ -1,12 +1,13 @@
 package skinjob.internal.peer;
 
 import android.text.SpannableStringBuilder;
-import android.text.Spanned;
 
 import java.awt.Font;
 import java.awt.MenuItem;
 import java.awt.peer.CheckboxMenuItemPeer;
 
+import skinjob.internal.TextAttributesDecoder;
+
 /**
  * SkinJobGlobals Android implementation of {@link CheckboxMenuItemPeer}.
  */
@@ -39,9 +40,8 @@ public class SkinJobMenuItemPeer implements CheckboxMenuItemPeer {
   protected synchronized void updateText() {
     SpannableStringBuilder spannableStringBuilder = new SpannableStringBuilder(label);
     if (font != null) {
-      for (Object span : font.sjGetAndroidSpans()) {
-        spannableStringBuilder.setSpan(span, 0, label.length(), Spanned.SPAN_INCLUSIVE_EXCLUSIVE);
-      }
+      TextAttributesDecoder.setSpans(
+          spannableStringBuilder, font.sjGetAndroidSpans(), 0, label.length());
     }
     androidMenuItem.setTitle(spannableStringBuilder);
   }
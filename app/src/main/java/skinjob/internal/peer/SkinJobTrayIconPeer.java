@@ -15,6 +15,7 @@ import java.awt.peer.TrayIconPeer;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import skinjob.SkinJobGlobals;
+import skinjob.internal.SkinJobBitmapPool;
 import skinjob.util.SkinJobUtil;
 
 import static android.app.Notification.PRIORITY_DEFAULT;
@@ -61,7 +62,9 @@ public class SkinJobTrayIconPeer implements TrayIconPeer {
   public void updateImage() {
     Image image = thisTrayIcon.getImage();
     if (image != null) {
-      notificationBuilder.setLargeIcon(SkinJobUtil.asAndroidBitmap(image));
+      // The notification outlives this call, and the image's bitmap may be pooled
+      notificationBuilder.setLargeIcon(
+          SkinJobBitmapPool.copyIfPooled(SkinJobUtil.asAndroidBitmap(image)));
     }
     notificationManager.notify(TAG, id, notificationBuilder.build());
   }
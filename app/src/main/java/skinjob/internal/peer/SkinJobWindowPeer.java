@@ -9,6 +9,8 @@ import android.view.ViewGroup.LayoutParams;
 import android.view.Window;
 import android.view.WindowInsets;
 
+import java.awt.AWTException;
+import java.awt.BufferCapabilities;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dialog;
@@ -48,6 +50,15 @@ public class SkinJobWindowPeer<T extends Window> extends SkinJobComponentPeer<T>
         MENU_BAR_ATTRIBUTES);
   }
 
+  /**
+   * Frames are shown as the background of the decor view, behind any child components.
+   */
+  @Override
+  protected SkinJobFlipBuffers newFlipBuffers(int numBuffers, BufferCapabilities caps)
+      throws AWTException {
+    return new SkinJobFlipBuffers(androidWidget.getDecorView(), thisAwtWindow, numBuffers, caps);
+  }
+
   @Override
   public void setTitle(String title) {
     androidWidget.setTitle(title);
@@ -185,7 +196,7 @@ public class SkinJobWindowPeer<T extends Window> extends SkinJobComponentPeer<T>
   }
 
   @Override
-  public void endLayout() {
+  protected void applyEndLayout() {
     updateWindow();
   }
 
@@ -209,11 +220,21 @@ public class SkinJobWindowPeer<T extends Window> extends SkinJobComponentPeer<T>
 
   @Override
   public void paint(Graphics g) {
+    Rectangle clip = g.getClipBounds();
+    if (clip != null && clip.isEmpty()) {
+      return;
+    }
     androidWidget.getDecorView().draw(getCanvas(g));
   }
 
   @Override
-  public void setBounds(int x, int y, int width, int height, int op) {
+  protected void invalidateAndroidWidget(Rectangle damaged) {
+    androidWidget.getDecorView().postInvalidate(damaged.x, damaged.y,
+        damaged.x + damaged.width, damaged.y + damaged.height);
+  }
+
+  @Override
+  protected void applyBounds(int x, int y, int width, int height, int op) {
     View decorView = androidWidget.getDecorView();
     if (op == SET_CLIENT_SIZE) {
       if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.M) {
@@ -4,11 +4,15 @@ import android.graphics.Matrix;
 import android.graphics.Path;
 import android.graphics.Path.FillType;
 import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Region;
+import android.graphics.RegionIterator;
 import android.util.Log;
 
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
+import java.awt.geom.Path2D;
 import java.awt.geom.PathIterator;
 import java.awt.geom.Rectangle2D;
 
@@ -87,6 +91,7 @@ public final class Geometry {
         default:
           Log.e(TAG, "Unknown path segment type " + segmentType);
       }
+      iterator.next();
     }
     if (!transform.isIdentity()) {
       path.transform(transformToMatrix(transform));
@@ -150,6 +155,30 @@ public final class Geometry {
     return new Rectangle2D.Double(rect.left, rect.top, rect.width(), rect.height());
   }
 
+  /**
+   * Converts an Android {@link Path} to a {@link Shape}. Before API 26, a path's segments can't be
+   * read back, so the shape is the path's pixel coverage, as a union of rectangles.
+   */
+  public static Shape androidPathToShape(Path path) {
+    RectF bounds = new RectF();
+    path.computeBounds(bounds, true);
+    Rect clip = new Rect();
+    bounds.roundOut(clip);
+    Path2D.Float shape = new Path2D.Float();
+    if (clip.isEmpty()) {
+      return shape;
+    }
+    Region region = new Region();
+    region.setPath(path, new Region(clip));
+    RegionIterator iterator = new RegionIterator(region);
+    Rect rect = new Rect();
+    while (iterator.next(rect)) {
+      // The rectangles never overlap, so appending them is the same as taking their union
+      shape.append(new Rectangle2D.Float(rect.left, rect.top, rect.width(), rect.height()), false);
+    }
+    return shape;
+  }
+
   public static Shape translate(Shape orig, int offsetX, int offsetY) {
     return new Shape.Translated(orig, offsetX, offsetY);
   }
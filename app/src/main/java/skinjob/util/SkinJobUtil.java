@@ -81,6 +81,11 @@ public final class SkinJobUtil {
     return window;
   }
 
+  /**
+   * @return the image's own bitmap if it has one. That bitmap may come from {@link
+   * skinjob.internal.SkinJobBitmapPool}, so it's only valid while {@code image} is reachable; use
+   * {@link skinjob.internal.SkinJobBitmapPool#copyIfPooled(Bitmap)} to keep it longer.
+   */
   public static Bitmap asAndroidBitmap(Image image) {
     if (image instanceof SkinJobAndroidBitmapWrapper) {
       return ((SkinJobAndroidBitmapWrapper) image).sjGetAndroidBitmap();
@@ -100,7 +105,9 @@ public final class SkinJobUtil {
     Raster raster = image.getData();
     int width = image.getWidth();
     int height = image.getHeight();
-    SkinJobBufferedImage buffered = new SkinJobBufferedImage(width, height);
+    // Not pooled: the caller may keep the bitmap, and nothing would keep a pool owner reachable
+    SkinJobBufferedImage buffered = new SkinJobBufferedImage(
+        Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888));
     buffered.setData(raster);
     return buffered.sjGetAndroidBitmap();
   }
@@ -113,16 +120,29 @@ public final class SkinJobUtil {
     }
   }
 
+  /**
+   * Applies an AWT {@code setBounds} operation to an Android widget. Values that are already
+   * current are skipped, since each setter can invalidate the widget or request a new layout of the
+   * whole view hierarchy.
+   */
   public static <T extends View> void setBounds(View androidWidget, int x, int y, int width,
       int height, int op) {
     switch (op) {
       case SET_SIZE:
-        androidWidget.setMinimumHeight(height);
-        androidWidget.setMinimumWidth(width);
+        if (androidWidget.getMinimumHeight() != height) {
+          androidWidget.setMinimumHeight(height);
+        }
+        if (androidWidget.getMinimumWidth() != width) {
+          androidWidget.setMinimumWidth(width);
+        }
         return;
       case SET_LOCATION:
-        androidWidget.setX(x);
-        androidWidget.setY(y);
+        if (androidWidget.getX() != x) {
+          androidWidget.setX(x);
+        }
+        if (androidWidget.getY() != y) {
+          androidWidget.setY(y);
+        }
         return;
       case SET_BOUNDS:
         setBounds(androidWidget, x, y, width, height, SET_LOCATION);
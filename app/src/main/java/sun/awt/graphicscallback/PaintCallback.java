@@ -3,6 +3,7 @@ package sun.awt.graphicscallback;
 import java.awt.Component;
 import java.awt.Graphics;
 
+import skinjob.internal.SkinJobDisplayList;
 import sun.awt.SunGraphicsCallback;
 
 /**
@@ -20,6 +21,10 @@ public final class PaintCallback extends SunGraphicsCallback {
 
   @Override
   public void run(Component comp, Graphics cg) {
-    comp.paint(cg);
+    if (comp.isLightweight()) {
+      SkinJobDisplayList.paint(comp, cg);
+    } else {
+      comp.paint(cg);
+    }
   }
 }
@@ -44,6 +44,16 @@ public abstract class VSyncedBSManager {
     return theInstance;
   }
 
+  /**
+   * Returns true if the buffer strategy should be allowed to be created v-synced.
+   *
+   * @return true if the bs should be v-synced, false otherwise
+   */
+  public static synchronized boolean vsyncAllowed(BufferStrategy bs) {
+    VSyncedBSManager bsm = getInstance(true);
+    return bsm.checkAllowed(bs);
+  }
+
   /**
    * Lets the manager know that this buffer strategy is no longer interested in being v-synced.
    */
@@ -54,6 +64,8 @@ public abstract class VSyncedBSManager {
     }
   }
 
+  abstract boolean checkAllowed(BufferStrategy bs);
+
   abstract void relinquishVsync(BufferStrategy bs);
 
   /**
@@ -63,6 +75,11 @@ public abstract class VSyncedBSManager {
     NoLimitVSyncBSMgr() {
     }
 
+    @Override
+    boolean checkAllowed(BufferStrategy bs) {
+      return true;
+    }
+
     @Override
     void relinquishVsync(BufferStrategy bs) {
     }
@@ -78,6 +95,18 @@ public abstract class VSyncedBSManager {
     SingleVSyncedBSMgr() {
     }
 
+    @Override
+    public synchronized boolean checkAllowed(BufferStrategy bs) {
+      if (strategy != null) {
+        BufferStrategy current = strategy.get();
+        if (current != null) {
+          return current == bs;
+        }
+      }
+      strategy = new WeakReference<>(bs);
+      return true;
+    }
+
     @Override
     public synchronized void relinquishVsync(BufferStrategy bs) {
       if (strategy != null) {
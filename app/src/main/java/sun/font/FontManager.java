@@ -1,9 +1,19 @@
 package sun.font;
 
+import android.graphics.Typeface;
+
 import java.awt.Font;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Locale;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import skinjob.SkinJobGlobals;
 
 /**
  * Partial reimplementation of the OpenJDK class for use by SkinJob.
@@ -14,31 +24,168 @@ public class FontManager {
   private static final FontManager INSTANCE = new FontManager();
   public static Object LOGICAL_FALLBACK;
 
-  private final TreeSet<Font> installedFonts = new TreeSet<>();
-  private final TreeSet<Font> createdFonts = new TreeSet<>();
+  // Guarded by this
+  private final Set<Font> installedFonts = new LinkedHashSet<>();
+  private final Set<Font> createdFonts = new LinkedHashSet<>();
+  /**
+   * Copies of {@link #installedFonts} and {@link #createdFonts}, replaced whenever a font is
+   * registered, so that they can be read without locking.
+   */
+  private volatile Font[] installedFontsSnapshot = A_FONT_ARRAY;
+  private volatile Font[] createdFontsSnapshot = A_FONT_ARRAY;
+  /**
+   * Typefaces by family name, then by style.
+   */
+  private final ConcurrentHashMap<String, Typeface[]> typefaces = new ConcurrentHashMap<>();
+  /**
+   * Typefaces loaded from the {@link SystemFontCatalog}'s files, so that a family's English and
+   * localized names share them.
+   */
+  private final ConcurrentHashMap<File, Typeface> fileTypefaces = new ConcurrentHashMap<>();
+  /**
+   * Coverage of each typeface. Typefaces are kept for the life of the process anyway.
+   */
+  private final ConcurrentHashMap<Typeface, GlyphCoverage> coverages = new ConcurrentHashMap<>();
+  private final LRUCache<FontStateKey, FontState> fontStates
+      = new LRUCache<FontStateKey, FontState>() {
+    @Override
+    protected int getMaxSize() {
+      return SkinJobGlobals.fontStateCacheSize;
+    }
+  };
 
   public static FontManager getInstance() {
     return INSTANCE;
   }
 
-  public Font[] getAllInstalledFonts() {
-    synchronized (installedFonts) {
-      return installedFonts.toArray(A_FONT_ARRAY);
+  /**
+   * @param family a family name, or null for the default family
+   * @param style {@link Font#PLAIN}, or any combination of {@link Font#BOLD} and {@link
+   * Font#ITALIC}
+   * @return the typeface, which is only created the first time it's requested
+   */
+  public Typeface getTypeface(String family, int style) {
+    String key = (family == null) ? "" : family;
+    Typeface[] byStyle = typefaces.get(key);
+    if (byStyle == null) {
+      byStyle = new Typeface[(Font.BOLD | Font.ITALIC) + 1];
+      Typeface[] existing = typefaces.putIfAbsent(key, byStyle);
+      if (existing != null) {
+        byStyle = existing;
+      }
     }
+    style &= Font.BOLD | Font.ITALIC;
+    Typeface typeface = byStyle[style];
+    if (typeface == null) {
+      // Creating the same typeface twice is harmless, so this needn't be synchronized
+      typeface = createTypeface(family, style);
+      byStyle[style] = typeface;
+    }
+    return typeface;
   }
 
-  public Font[] getCreatedFonts() {
-    synchronized (createdFonts) {
-      return createdFonts.toArray(A_FONT_ARRAY);
+  /**
+   * {@link Typeface#create(String, int)} only knows the system font aliases, such as {@code
+   * sans-serif}, and silently returns the default typeface for any other name, so other installed
+   * families are loaded from the files that the {@link SystemFontCatalog} found for them.
+   */
+  private Typeface createTypeface(String family, int style) {
+    if (family != null && SystemFontCatalog.needsCatalog(family)) {
+      SystemFontCatalog catalog = SystemFontCatalog.get();
+      File face = catalog.getFace(family, style);
+      if (face != null) {
+        Typeface typeface = getFileTypeface(face);
+        if (typeface != null) {
+          return typeface;
+        }
+      }
+      face = catalog.getFace(family, Font.PLAIN);
+      if (face != null) {
+        Typeface typeface = getFileTypeface(face);
+        if (typeface != null) {
+          // Android synthesizes the missing bold or italic
+          return Typeface.create(typeface, style);
+        }
+      }
     }
+    return Typeface.create(family, style);
   }
 
-  public synchronized TreeMap<String, String> getCreatedFontFamilyNames() {
-    TreeMap<String, String> familyNames = new TreeMap<>();
-    synchronized (createdFonts) {
-      for (Font font : createdFonts) {
-        familyNames.put(font.getName(), font.getFamily());
+  /**
+   * @return the typeface in {@code file}, or null if Android can't load it
+   */
+  private Typeface getFileTypeface(File file) {
+    Typeface typeface = fileTypefaces.get(file);
+    if (typeface == null) {
+      try {
+        typeface = Typeface.createFromFile(file);
+      } catch (RuntimeException e) {
+        return null;
       }
+      Typeface existing = fileTypefaces.putIfAbsent(file, typeface);
+      if (existing != null) {
+        typeface = existing;
+      }
+    }
+    return typeface;
+  }
+
+  /**
+   * @return the state shared by every font with this typeface and point size
+   */
+  public FontState getFontState(Typeface typeface, float size) {
+    FontStateKey key = new FontStateKey(typeface, size);
+    FontState state = fontStates.get(key);
+    if (state == null) {
+      state = new FontState(typeface, size, getGlyphCoverage(typeface));
+      fontStates.put(key, state);
+    }
+    return state;
+  }
+
+  /**
+   * @return which code points the typeface has glyphs for
+   */
+  public GlyphCoverage getGlyphCoverage(Typeface typeface) {
+    GlyphCoverage coverage = coverages.get(typeface);
+    if (coverage == null) {
+      coverage = new GlyphCoverage(typeface);
+      GlyphCoverage existing = coverages.putIfAbsent(typeface, coverage);
+      if (existing != null) {
+        coverage = existing;
+      }
+    }
+    return coverage;
+  }
+
+  /**
+   * @return the cache of shared font states, whose statistics show whether {@link
+   * SkinJobGlobals#fontStateCacheSize} is large enough
+   */
+  public LRUCache<?, ?> getFontStateCache() {
+    return fontStates;
+  }
+
+  /**
+   * @return the system fonts from the {@link SystemFontCatalog}, followed by any fonts registered
+   * with {@link #registerFont(Font)} that weren't created from a file or stream
+   */
+  public Font[] getAllInstalledFonts() {
+    Font[] systemFonts = SystemFontCatalog.get().getFonts();
+    Font[] registered = installedFontsSnapshot;
+    Font[] fonts = Arrays.copyOf(systemFonts, systemFonts.length + registered.length);
+    System.arraycopy(registered, 0, fonts, systemFonts.length, registered.length);
+    return fonts;
+  }
+
+  public Font[] getCreatedFonts() {
+    return createdFontsSnapshot.clone();
+  }
+
+  public TreeMap<String, String> getCreatedFontFamilyNames() {
+    TreeMap<String, String> familyNames = new TreeMap<>();
+    for (Font font : createdFontsSnapshot) {
+      familyNames.put(font.getName(), font.getFamily());
     }
     return familyNames;
   }
@@ -49,14 +196,17 @@ public class FontManager {
       fontResolver.add(font);
     }
     if (font.isCreated()) {
-      synchronized (createdFonts) {
-        return createdFonts.add(font);
+      if (!createdFonts.add(font)) {
+        return false;
       }
+      createdFontsSnapshot = createdFonts.toArray(A_FONT_ARRAY);
     } else {
-      synchronized (installedFonts) {
-        return installedFonts.add(font);
+      if (!installedFonts.add(font)) {
+        return false;
       }
+      installedFontsSnapshot = installedFonts.toArray(A_FONT_ARRAY);
     }
+    return true;
   }
 
   public void preferLocaleFonts() {
@@ -67,15 +217,50 @@ public class FontManager {
     // TODO
   }
 
+  /**
+   * @return the family names of the system fonts and of the registered fonts, sorted
+   */
   public String[] getInstalledFontFamilyNames(Locale locale) {
-    synchronized (installedFonts) {
-      String[] names = new String[installedFonts.size()];
-      int i = 0;
-      for (Font font : installedFonts) {
-        names[i] = font.getFontName(locale);
-        i++;
+    String[] systemNames = SystemFontCatalog.get().getFamilyNames(locale);
+    Font[] registered = installedFontsSnapshot;
+    Font[] created = createdFontsSnapshot;
+    if (registered.length == 0 && created.length == 0) {
+      return systemNames.clone();
+    }
+    TreeSet<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    Collections.addAll(names, systemNames);
+    for (Font font : registered) {
+      names.add(font.getFamily(locale));
+    }
+    for (Font font : created) {
+      names.add(font.getFamily(locale));
+    }
+    return names.toArray(A_STRING_ARRAY);
+  }
+
+  private static final class FontStateKey {
+    private final Typeface typeface;
+    private final float size;
+
+    FontStateKey(Typeface typeface, float size) {
+      this.typeface = typeface;
+      this.size = size;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(typeface) + Float.floatToIntBits(size);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof FontStateKey)) {
+        return false;
       }
-      return names;
+      FontStateKey other = (FontStateKey) o;
+      // Typefaces are interned, so they're compared by identity
+      return typeface == other.typeface
+          && Float.floatToIntBits(size) == Float.floatToIntBits(other.size);
     }
   }
 }
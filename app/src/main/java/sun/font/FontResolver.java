@@ -5,6 +5,7 @@ import java.text.AttributedCharacterIterator.Attribute;
 import java.util.ArrayList;
 import java.util.Map;
 
+import skinjob.SkinJobGlobals;
 import sun.text.CodePointIterator;
 
 /**
@@ -17,22 +18,42 @@ public class FontResolver extends ArrayList<Font> {
     return instance;
   }
 
+  /**
+   * @return the index of the first font that has a glyph for the code point, or 0 if none do, so
+   * that the first font's missing glyph is shown
+   */
   public int getFontIndex(int ch) {
     for (int i = 0; i < size(); i++) {
       if (get(i).canDisplay(ch)) {
         return i;
       }
     }
-    return -1;
+    return 0;
   }
 
   public Font getFont(
       int fontIndex, Map<? extends Attribute, ?> attributes) {
+    if (fontIndex >= size()) {
+      // No fonts have been registered
+      return SkinJobGlobals.defaultFont.deriveFont(attributes);
+    }
     return get(fontIndex).deriveFont(attributes);
   }
 
+  /**
+   * Advances {@code iter} past the longest run of code points, starting with the next one, that
+   * resolve to the same font.
+   *
+   * @return the index of that font
+   */
   public int nextFontRunIndex(CodePointIterator iter) {
-    // TODO
-    return 0;
+    if (!iter.hasNext()) {
+      return 0;
+    }
+    int fontIndex = getFontIndex(iter.next());
+    while (iter.hasNext() && getFontIndex(iter.peek()) == fontIndex) {
+      iter.next();
+    }
+    return fontIndex;
   }
 }
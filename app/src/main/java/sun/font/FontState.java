@@ -0,0 +1,99 @@
+package sun.font;
+
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.os.Build;
+
+/**
+ * The Android typeface, paint and metrics behind every {@link java.awt.Font} with the same typeface
+ * and point size, shared through {@link FontManager#getFontState(Typeface, float)} so that deriving
+ * or recreating a font doesn't allocate another {@link Paint} or measure its glyphs again. Nothing
+ * here may be modified once it's shared: callers that need to change the paint must copy it.
+ */
+public final class FontState {
+  private static final int FIRST_CODE_POINT = ' ';
+  private static final int MAX_CODE_POINT = Character.MAX_CODE_POINT;
+  private final Typeface typeface;
+  private final float size;
+  private final Paint paint;
+  private final GlyphCoverage coverage;
+  private volatile Paint.FontMetrics fontMetrics;
+  // Guarded by this
+  private float maxCharWidth = -1;
+  private int numGlyphs = -1;
+
+  FontState(Typeface typeface, float size, GlyphCoverage coverage) {
+    this.typeface = typeface;
+    this.size = size;
+    this.coverage = coverage;
+    paint = new Paint();
+    paint.setTypeface(typeface);
+    paint.setTextSize(size);
+  }
+
+  public Typeface getTypeface() {
+    return typeface;
+  }
+
+  public float getSize() {
+    return size;
+  }
+
+  public GlyphCoverage getCoverage() {
+    return coverage;
+  }
+
+  /**
+   * @return the paint, which must not be modified
+   */
+  public Paint getPaint() {
+    return paint;
+  }
+
+  /**
+   * @return the paint's metrics, which must not be modified
+   */
+  public Paint.FontMetrics getFontMetrics() {
+    Paint.FontMetrics metrics = fontMetrics;
+    if (metrics == null) {
+      metrics = paint.getFontMetrics();
+      fontMetrics = metrics;
+    }
+    return metrics;
+  }
+
+  /**
+   * @return the widest bounds of any glyph that the typeface has
+   */
+  public synchronized float getMaxCharWidth() {
+    if (maxCharWidth < 0) {
+      maxCharWidth = 0;
+      Rect bounds = new Rect();
+      char[] glyph = new char[2];
+      for (int codePoint = FIRST_CODE_POINT; codePoint < MAX_CODE_POINT; codePoint++) {
+        if (!coverage.covers(codePoint)) {
+          continue;
+        }
+        paint.getTextBounds(glyph, 0, Character.toChars(codePoint, glyph, 0), bounds);
+        maxCharWidth = Math.max(maxCharWidth, bounds.width());
+      }
+    }
+    return maxCharWidth;
+  }
+
+  /**
+   * @return the number of code points that the typeface has a glyph for; only known on Android 6.0
+   * and later, where {@link Paint#hasGlyph(String)} exists
+   */
+  public synchronized int getNumGlyphs() {
+    if (numGlyphs < 0) {
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+        numGlyphs = coverage.countCovered();
+      } else {
+        numGlyphs = MAX_CODE_POINT - FIRST_CODE_POINT;
+      }
+    }
+    return numGlyphs;
+  }
+}
@@ -0,0 +1,136 @@
+package sun.font;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Which code points a typeface has glyphs for, shared through {@link
+ * FontManager#getGlyphCoverage(Typeface)} by every font that uses the typeface. Each Unicode plane
+ * is divided into blocks of {@value #BLOCK_SIZE} code points, and each block is probed with {@link
+ * Paint#hasGlyph(String)} the first time any of its code points is looked up. A block the typeface
+ * covers entirely, or not at all, is shared rather than stored as a bitset of its own, so that the
+ * planes a typeface barely touches take up little memory.
+ * <p>
+ * Before Android 6.0, which has no {@link Paint#hasGlyph(String)}, every code point is assumed to
+ * be covered.
+ */
+public final class GlyphCoverage {
+  static final int BLOCK_SIZE = 256;
+  private static final int BLOCK_SHIFT = 8;
+  private static final int BLOCKS_PER_PLANE = 0x10000 / BLOCK_SIZE;
+  private static final int NUM_PLANES = (Character.MAX_CODE_POINT >> 16) + 1;
+  private static final long[] EMPTY_BLOCK = new long[BLOCK_SIZE / 64];
+  private static final long[] FULL_BLOCK = new long[BLOCK_SIZE / 64];
+
+  static {
+    for (int i = 0; i < FULL_BLOCK.length; i++) {
+      FULL_BLOCK[i] = -1L;
+    }
+  }
+
+  private final Paint paint;
+  /**
+   * Blocks of each plane, each of which is null until it's probed.
+   */
+  private final AtomicReferenceArray<AtomicReferenceArray<long[]>> planes
+      = new AtomicReferenceArray<>(NUM_PLANES);
+
+  GlyphCoverage(Typeface typeface) {
+    paint = new Paint();
+    paint.setTypeface(typeface);
+  }
+
+  /**
+   * @return whether the typeface has a glyph for the code point, which must be valid
+   */
+  public boolean covers(int codePoint) {
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+      return true;
+    }
+    long[] block = getBlock(codePoint);
+    int bit = codePoint & (BLOCK_SIZE - 1);
+    return (block[bit >> 6] & (1L << bit)) != 0;
+  }
+
+  /**
+   * @return the index of the first code point in {@code text} from {@code start} to {@code limit}
+   * that isn't covered, or -1 if they all are. An unpaired surrogate is never covered.
+   */
+  public int firstUncovered(CharSequence text, int start, int limit) {
+    for (int i = start; i < limit; i++) {
+      char c = text.charAt(i);
+      if (Character.isHighSurrogate(c) && i + 1 < limit
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        if (!covers(Character.toCodePoint(c, text.charAt(i + 1)))) {
+          return i;
+        }
+        i++;
+      } else if (!covers(c)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private long[] getBlock(int codePoint) {
+    int planeIndex = codePoint >> 16;
+    AtomicReferenceArray<long[]> plane = planes.get(planeIndex);
+    if (plane == null) {
+      planes.compareAndSet(planeIndex, null, new AtomicReferenceArray<long[]>(BLOCKS_PER_PLANE));
+      plane = planes.get(planeIndex);
+    }
+    int blockIndex = (codePoint & 0xFFFF) >> BLOCK_SHIFT;
+    long[] block = plane.get(blockIndex);
+    if (block == null) {
+      // Probing the same block twice is harmless, so this needn't be synchronized
+      block = probe(codePoint & ~(BLOCK_SIZE - 1));
+      plane.set(blockIndex, block);
+    }
+    return block;
+  }
+
+  private long[] probe(int blockStart) {
+    long[] block = new long[BLOCK_SIZE / 64];
+    int covered = 0;
+    char[] chars = new char[2];
+    synchronized (paint) {
+      for (int i = 0; i < BLOCK_SIZE; i++) {
+        int codePoint = blockStart + i;
+        if (Character.getType(codePoint) == Character.SURROGATE) {
+          continue; // Never a glyph on its own
+        }
+        int length = Character.toChars(codePoint, chars, 0);
+        if (paint.hasGlyph(new String(chars, 0, length))) {
+          block[i >> 6] |= 1L << i;
+          covered++;
+        }
+      }
+    }
+    if (covered == 0) {
+      return EMPTY_BLOCK;
+    }
+    if (covered == BLOCK_SIZE) {
+      return FULL_BLOCK;
+    }
+    return block;
+  }
+
+  /**
+   * @return the number of code points covered, which probes every block
+   */
+  public int countCovered() {
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+      return Character.MAX_CODE_POINT + 1;
+    }
+    int count = 0;
+    for (int blockStart = 0; blockStart <= Character.MAX_CODE_POINT; blockStart += BLOCK_SIZE) {
+      for (long bits : getBlock(blockStart)) {
+        count += Long.bitCount(bits);
+      }
+    }
+    return count;
+  }
+}
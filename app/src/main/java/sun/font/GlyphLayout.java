@@ -74,8 +74,8 @@ import java.awt.font.GlyphVector;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
-import java.lang.ref.SoftReference;
-import java.util.concurrent.ConcurrentHashMap;
+
+import skinjob.SkinJobGlobals;
 
 public final class GlyphLayout {
   // data for glyph vector
@@ -140,8 +140,12 @@ public final class GlyphLayout {
 
     private static final Point2D.Float ZERO_DELTA = new Point2D.Float();
 
-    private static
-    SoftReference<ConcurrentHashMap<SDKey, SDCache>> cacheRef;
+    private static final LRUCache<SDKey, SDCache> cache = new LRUCache<SDKey, SDCache>() {
+      @Override
+      protected int getMaxSize() {
+        return SkinJobGlobals.strikeDescriptorCacheSize;
+      }
+    };
 
     private static final class SDKey {
       private final Font font;
@@ -195,29 +199,23 @@ public final class GlyphLayout {
       }
 
       SDKey key = new SDKey(font, frc); // garbage, yuck...
-      ConcurrentHashMap<SDKey, SDCache> cache = null;
-      SDCache res = null;
-      if (cacheRef != null) {
-        cache = cacheRef.get();
-        if (cache != null) {
-          res = cache.get(key);
-        }
-      }
+      SDCache res = cache.get(key);
       if (res == null) {
         res = new SDCache(font, frc);
-        if (cache == null) {
-          cache = new ConcurrentHashMap<SDKey, SDCache>(10);
-          cacheRef = new
-              SoftReference<ConcurrentHashMap<SDKey, SDCache>>(cache);
-        } else if (cache.size() >= 512) {
-          cache.clear();
-        }
         cache.put(key, res);
       }
       return res;
     }
   }
 
+  /**
+   * @return the cache of transforms for each font and {@link FontRenderContext}, whose statistics
+   * show whether {@link SkinJobGlobals#strikeDescriptorCacheSize} is large enough
+   */
+  public static LRUCache<?, ?> getStrikeDescriptorCache() {
+    return SDCache.cache;
+  }
+
   /**
    * Create a glyph vector.
    *
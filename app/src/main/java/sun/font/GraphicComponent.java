@@ -104,6 +104,11 @@ public class GraphicComponent extends TextLineComponent {
     return getAdvance();
   }
 
+  @Override
+  public int getLineBreakIndex(int start, float width) {
+    return (start == 0 && getAdvance() <= width) ? 1 : start;
+  }
+
   @Override
   public TextLineComponent getSubset(int start, int length, int subsetFlag) {
     if (length >= 1) {
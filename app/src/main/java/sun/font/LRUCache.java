@@ -0,0 +1,78 @@
+package sun.font;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Thread-safe map that evicts its least recently used entries once it holds more than {@link
+ * #getMaxSize()} of them, and counts its hits, misses and evictions so that its size can be tuned.
+ * The maximum size is read on every insertion, so that it can come from a tunable in {@link
+ * skinjob.SkinJobGlobals}.
+ */
+public abstract class LRUCache<K, V> {
+  private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * @return the number of entries to keep
+   */
+  protected abstract int getMaxSize();
+
+  /**
+   * @return the cached value, or null if there is none
+   */
+  public synchronized V get(K key) {
+    V value = entries.get(key);
+    if (value == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return value;
+  }
+
+  public synchronized void put(K key, V value) {
+    entries.put(key, value);
+    int maxSize = Math.max(0, getMaxSize());
+    Iterator<V> eldestFirst = entries.values().iterator();
+    while (entries.size() > maxSize) {
+      eldestFirst.next();
+      eldestFirst.remove();
+      evictions++;
+    }
+  }
+
+  /**
+   * Evicts every entry.
+   */
+  public synchronized void clear() {
+    evictions += entries.size();
+    entries.clear();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  public synchronized long getEvictionCount() {
+    return evictions;
+  }
+
+  /**
+   * @return the fraction of lookups that were hits, or 0 if there haven't been any
+   */
+  public synchronized double getHitRate() {
+    long lookups = hits + misses;
+    return (lookups == 0) ? 0 : (double) hits / lookups;
+  }
+}
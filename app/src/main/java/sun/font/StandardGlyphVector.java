@@ -64,9 +64,8 @@ public class StandardGlyphVector extends GlyphVector {
         charsWritten++;
         Map<Attribute, Object> attributes = ((AttributedCharacterIterator) ci).getAttributes();
         if (!attributes.isEmpty()) {
-          new TextAttributesDecoder(color)
-              .addAttributes(attributes)
-              .applyTo(spannableString, charsWritten - 1, charsWritten);
+          TextAttributesDecoder.applyTo(
+              attributes, color, spannableString, charsWritten - 1, charsWritten);
         }
       }
     }
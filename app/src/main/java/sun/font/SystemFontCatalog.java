@@ -0,0 +1,417 @@
+package sun.font;
+
+import android.graphics.Typeface;
+
+import java.awt.Font;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Immutable snapshot of the fonts installed on the device, found by scanning the system font
+ * directories and reading each font file's {@code name} and {@code OS/2} tables directly, since
+ * Android has no public API to enumerate them. The scan is started on a background thread by {@link
+ * #preload()} when the toolkit starts, so that the first {@link
+ * java.awt.GraphicsEnvironment#getAvailableFontFamilyNames()} usually finds it done; {@link #get()}
+ * waits for it otherwise. Once built, the catalog is never modified, so it's read without locking.
+ */
+public final class SystemFontCatalog {
+  private static final String[] FONT_DIRS = {"/system/fonts", "/product/fonts"};
+  private static final String[] LOGICAL_FAMILIES = {
+      Font.DIALOG, Font.DIALOG_INPUT, Font.MONOSPACED, Font.SANS_SERIF, Font.SERIF};
+  private static final Charset UTF_16BE = Charset.forName("UTF-16BE");
+  private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+  private static final int TAG_TTCF = 0x74746366;
+  private static final int TAG_NAME = 0x6E616D65;
+  private static final int TAG_OS2 = 0x4F532F32;
+  private static final int NAME_ID_FAMILY = 1;
+  private static final int PLATFORM_UNICODE = 0;
+  private static final int PLATFORM_MACINTOSH = 1;
+  private static final int PLATFORM_WINDOWS = 3;
+  private static final int WINDOWS_ENGLISH = 0x09;
+  /**
+   * ISO 639 languages of the primary language IDs in Windows name records, for the languages that
+   * fonts commonly localize their names in.
+   */
+  private static final Map<Integer, String> WINDOWS_LANGUAGES = new HashMap<>();
+  /**
+   * The names that {@link Typeface#create(String, int)} recognizes, or null if they can't be read.
+   */
+  private static final Set<String> TYPEFACE_ALIASES = readTypefaceAliases();
+  private static final FutureTask<SystemFontCatalog> loader
+      = new FutureTask<>(new Callable<SystemFontCatalog>() {
+        @Override
+        public SystemFontCatalog call() {
+          return scan();
+        }
+      });
+
+  static {
+    String[] languages = {
+        "ar", "bg", "ca", "zh", "cs", "da", "de", "el", "en", "es", "fi", "fr", "he", "hu", "is",
+        "it", "ja", "ko", "nl", "no", "pl", "pt", "rm", "ro", "ru", "hr", "sk", "sq", "sv", "th",
+        "tr", "ur", "in", "uk", "be", "sl", "et", "lv", "lt", "tg", "fa", "vi", "hy", "az", "eu"};
+    for (int i = 0; i < languages.length; i++) {
+      WINDOWS_LANGUAGES.put(i + 1, languages[i]);
+    }
+    WINDOWS_LANGUAGES.put(0x39, "hi");
+    WINDOWS_LANGUAGES.put(0x45, "bn");
+    WINDOWS_LANGUAGES.put(0x49, "ta");
+  }
+
+  private final Map<String, Family> families;
+  /**
+   * Every family by its lower-case English name and each of its lower-case localized names.
+   */
+  private final Map<String, Family> familiesByName;
+  private final String[] familyNames;
+  /**
+   * Family names, sorted, for each language that any family has a localized name in.
+   */
+  private final Map<String, String[]> localizedFamilyNames;
+  private final String[] aliases;
+  private volatile Font[] fonts;
+
+  private SystemFontCatalog(
+      Map<String, Family> families, Map<String, Family> familiesByName,
+      Map<String, String[]> localizedFamilyNames, String[] aliases) {
+    this.families = families;
+    this.familiesByName = familiesByName;
+    this.localizedFamilyNames = localizedFamilyNames;
+    this.aliases = aliases;
+    familyNames = localizedFamilyNames.get("");
+  }
+
+  /**
+   * Starts scanning the installed fonts on a background thread, unless that's already started.
+   */
+  public static void preload() {
+    if (loader.isDone()) {
+      return;
+    }
+    Thread thread = new Thread(loader, "SkinJob font catalog");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * @return the catalog, scanning the installed fonts on this thread if no scan has started, or
+   * else waiting for it to finish
+   */
+  public static SystemFontCatalog get() {
+    loader.run(); // Does nothing if the scan has started
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return loader.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Can't scan the installed fonts", e.getCause());
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * @return whether a typeface for {@code familyName} has to be found in the catalog, i.e. it's
+   * neither a logical family nor a name that {@link Typeface#create(String, int)} recognizes. This
+   * doesn't wait for the scan.
+   */
+  public static boolean needsCatalog(String familyName) {
+    for (String logical : LOGICAL_FAMILIES) {
+      if (logical.equalsIgnoreCase(familyName)) {
+        return false;
+      }
+    }
+    return TYPEFACE_ALIASES == null || !TYPEFACE_ALIASES.contains(familyName);
+  }
+
+  /**
+   * @param familyName the English or a localized name of a family, in any case
+   * @param style {@link Font#PLAIN}, or any combination of {@link Font#BOLD} and {@link
+   * Font#ITALIC}
+   * @return the file holding that style of the family, or null if there's none
+   */
+  public File getFace(String familyName, int style) {
+    Family family = familiesByName.get(familyName.toLowerCase(Locale.ENGLISH));
+    return (family == null) ? null : family.faces[style & (Font.BOLD | Font.ITALIC)];
+  }
+
+  /**
+   * @return the family names in the language of {@code locale}, where the font has a name in that
+   * language, or else in English, sorted; the array must not be modified
+   */
+  String[] getFamilyNames(Locale locale) {
+    String[] names = (locale == null) ? null : localizedFamilyNames.get(locale.getLanguage());
+    return (names == null) ? familyNames : names;
+  }
+
+  /**
+   * @return the names that {@link Typeface#create(String, int)} recognizes, such as {@code
+   * sans-serif}, or the family names if they can't be determined; the array must not be modified
+   */
+  public String[] getTypefaceAliases() {
+    return aliases;
+  }
+
+  /**
+   * @return a 1-point font for each style of each family; the array must not be modified
+   */
+  Font[] getFonts() {
+    Font[] result = fonts;
+    if (result == null) {
+      List<Font> list = new ArrayList<>();
+      for (Family family : families.values()) {
+        for (int style = 0; style < family.faces.length; style++) {
+          if (family.faces[style] != null) {
+            list.add(new Font(family.name, style, 1));
+          }
+        }
+      }
+      result = list.toArray(new Font[list.size()]);
+      fonts = result;
+    }
+    return result;
+  }
+
+  private static SystemFontCatalog scan() {
+    // Keyed by lower-case English name, so that the families sort the way OpenJDK sorts them
+    TreeMap<String, Family> families = new TreeMap<>();
+    for (String dir : FONT_DIRS) {
+      File[] files = new File(dir).listFiles();
+      if (files == null) {
+        continue;
+      }
+      for (File file : files) {
+        String fileName = file.getName().toLowerCase(Locale.ENGLISH);
+        if (fileName.endsWith(".ttf") || fileName.endsWith(".otf")
+            || fileName.endsWith(".ttc")) {
+          try {
+            readFontFile(file, families);
+          } catch (IOException | RuntimeException e) {
+            // Not a font we can read; Android may still use it as a fallback
+          }
+        }
+      }
+    }
+    for (String logical : LOGICAL_FAMILIES) {
+      String key = logical.toLowerCase(Locale.ENGLISH);
+      if (!families.containsKey(key)) {
+        families.put(key, new Family(logical));
+      }
+    }
+
+    Map<String, List<String>> byLanguage = new HashMap<>();
+    List<String> english = new ArrayList<>(families.size());
+    Map<String, Family> familiesByName = new HashMap<>(families);
+    for (Family family : families.values()) {
+      english.add(family.name);
+      for (Map.Entry<String, String> localized : family.localizedNames.entrySet()) {
+        if (!byLanguage.containsKey(localized.getKey())) {
+          byLanguage.put(localized.getKey(), new ArrayList<String>());
+        }
+        String key = localized.getValue().toLowerCase(Locale.ENGLISH);
+        if (!familiesByName.containsKey(key)) {
+          familiesByName.put(key, family);
+        }
+      }
+    }
+    Map<String, String[]> localizedFamilyNames = new HashMap<>();
+    localizedFamilyNames.put("", english.toArray(new String[english.size()]));
+    for (Map.Entry<String, List<String>> entry : byLanguage.entrySet()) {
+      List<String> names = entry.getValue();
+      for (Family family : families.values()) {
+        String name = family.localizedNames.get(entry.getKey());
+        names.add(name == null ? family.name : name);
+      }
+      Collections.sort(names, String.CASE_INSENSITIVE_ORDER);
+      localizedFamilyNames.put(entry.getKey(), names.toArray(new String[names.size()]));
+    }
+    return new SystemFontCatalog(Collections.unmodifiableMap(families),
+        Collections.unmodifiableMap(familiesByName),
+        Collections.unmodifiableMap(localizedFamilyNames), getAliases(english));
+  }
+
+  private static String[] getAliases(List<String> familyNames) {
+    if (TYPEFACE_ALIASES == null) {
+      return familyNames.toArray(new String[familyNames.size()]);
+    }
+    List<String> aliases = new ArrayList<>(TYPEFACE_ALIASES);
+    Collections.sort(aliases);
+    return aliases.toArray(new String[aliases.size()]);
+  }
+
+  /**
+   * Reads the keys of {@link Typeface}'s private map of system font names.
+   */
+  private static Set<String> readTypefaceAliases() {
+    try {
+      Field systemFontMapField = Typeface.class.getDeclaredField("sSystemFontMap");
+      systemFontMapField.setAccessible(true);
+      Map<?, ?> systemFontMap = (Map<?, ?>) systemFontMapField.get(null);
+      Set<String> aliases = new HashSet<>(systemFontMap.size());
+      for (Object alias : systemFontMap.keySet()) {
+        aliases.add(String.valueOf(alias));
+      }
+      return Collections.unmodifiableSet(aliases);
+    } catch (NoSuchFieldException | IllegalAccessException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static void readFontFile(File file, Map<String, Family> families) throws IOException {
+    ByteBuffer buffer;
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      // The mapping stays valid once the file is closed
+      raf.close();
+    }
+    if (buffer.getInt(0) == TAG_TTCF) {
+      int numFonts = buffer.getInt(8);
+      for (int i = 0; i < numFonts; i++) {
+        readFace(buffer, buffer.getInt(12 + 4 * i), file, families);
+      }
+    } else {
+      readFace(buffer, 0, file, families);
+    }
+  }
+
+  private static void readFace(
+      ByteBuffer buffer, int offsetTable, File file, Map<String, Family> families) {
+    int numTables = buffer.getShort(offsetTable + 4) & 0xFFFF;
+    int nameTable = -1;
+    int os2Table = -1;
+    for (int i = 0; i < numTables; i++) {
+      int record = offsetTable + 12 + 16 * i;
+      int tag = buffer.getInt(record);
+      if (tag == TAG_NAME) {
+        nameTable = buffer.getInt(record + 8);
+      } else if (tag == TAG_OS2) {
+        os2Table = buffer.getInt(record + 8);
+      }
+    }
+    if (nameTable < 0) {
+      return;
+    }
+
+    String englishName = null;
+    String anyName = null;
+    Map<String, String> localizedNames = new HashMap<>();
+    int count = buffer.getShort(nameTable + 2) & 0xFFFF;
+    int stringStorage = nameTable + (buffer.getShort(nameTable + 4) & 0xFFFF);
+    for (int i = 0; i < count; i++) {
+      int record = nameTable + 6 + 12 * i;
+      if ((buffer.getShort(record + 6) & 0xFFFF) != NAME_ID_FAMILY) {
+        continue;
+      }
+      int platform = buffer.getShort(record) & 0xFFFF;
+      int encoding = buffer.getShort(record + 2) & 0xFFFF;
+      int language = buffer.getShort(record + 4) & 0xFFFF;
+      int length = buffer.getShort(record + 8) & 0xFFFF;
+      int offset = stringStorage + (buffer.getShort(record + 10) & 0xFFFF);
+      String name;
+      if (platform == PLATFORM_WINDOWS || platform == PLATFORM_UNICODE) {
+        name = decode(buffer, offset, length, UTF_16BE);
+      } else if (platform == PLATFORM_MACINTOSH && encoding == 0 && language == 0) {
+        // Roman, English; only ASCII family names are expected
+        name = decode(buffer, offset, length, ISO_8859_1);
+      } else {
+        continue;
+      }
+      if (anyName == null) {
+        anyName = name;
+      }
+      if (platform == PLATFORM_WINDOWS) {
+        String iso = WINDOWS_LANGUAGES.get(language & 0x3FF);
+        if ((language & 0x3FF) == WINDOWS_ENGLISH) {
+          if (englishName == null || language == 0x0409) {
+            englishName = name;
+          }
+        } else if (iso != null && !localizedNames.containsKey(iso)) {
+          localizedNames.put(iso, name);
+        }
+      } else if (platform == PLATFORM_MACINTOSH && englishName == null) {
+        englishName = name;
+      }
+    }
+    if (englishName == null) {
+      englishName = anyName;
+    }
+    if (englishName == null || englishName.isEmpty()) {
+      return;
+    }
+
+    int style = Font.PLAIN;
+    if (os2Table >= 0) {
+      int weightClass = buffer.getShort(os2Table + 4) & 0xFFFF;
+      int fsSelection = buffer.getShort(os2Table + 62) & 0xFFFF;
+      if (weightClass >= 600 || (fsSelection & 0x20) != 0) {
+        style |= Font.BOLD;
+      }
+      if ((fsSelection & 0x01) != 0) {
+        style |= Font.ITALIC;
+      }
+    }
+
+    String key = englishName.toLowerCase(Locale.ENGLISH);
+    Family family = families.get(key);
+    if (family == null) {
+      family = new Family(englishName);
+      families.put(key, family);
+    }
+    if (family.faces[style] == null) {
+      family.faces[style] = file;
+    }
+    for (Map.Entry<String, String> localized : localizedNames.entrySet()) {
+      if (!family.localizedNames.containsKey(localized.getKey())) {
+        family.localizedNames.put(localized.getKey(), localized.getValue());
+      }
+    }
+  }
+
+  private static String decode(ByteBuffer buffer, int offset, int length, Charset charset) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = buffer.get(offset + i);
+    }
+    return new String(bytes, charset).trim();
+  }
+
+  private static final class Family {
+    final String name;
+    /**
+     * The file holding each style, indexed by {@link Font#getStyle()}.
+     */
+    final File[] faces = new File[(Font.BOLD | Font.ITALIC) + 1];
+    final Map<String, String> localizedNames = new HashMap<>();
+
+    Family(String name) {
+      this.name = name;
+    }
+  }
+}
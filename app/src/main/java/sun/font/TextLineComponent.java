@@ -1,6 +1,10 @@
 package sun.font;
 
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.Rect;
+import android.os.Build;
 
 import java.awt.Font;
 import java.awt.Graphics2D;
@@ -12,6 +16,7 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.util.Arrays;
 
+import skinjob.internal.SkinJobGraphics;
 import skinjob.util.Geometry;
 
 import static skinjob.util.SkinJobUtil.rangeMaybeCopy;
@@ -32,6 +37,17 @@ public class TextLineComponent {
   private final Font font;
   private final CoreMetrics coreMetrics;
   private final int indexOffset; // For abstracting away an LTR-override or RTL-override prefix
+  /**
+   * Prefix sums of the character advances: the x position of each character, followed by the
+   * total advance. Computed on first use with a single {@link android.graphics.Paint#getTextWidths}
+   * call, so that all position and advance queries take constant time.
+   */
+  private volatile float[] positions;
+  /**
+   * Where each glyph is drawn, if justification has moved the glyphs away from {@link
+   * #positions}; otherwise null.
+   */
+  private final float[] glyphPositions;
 
   public TextLineComponent(
       char[] chars, Font font, CoreMetrics coreMetrics, Decoration decorator) {
@@ -40,33 +56,62 @@ public class TextLineComponent {
 
   protected TextLineComponent(
       char[] chars, Font font, CoreMetrics coreMetrics, Decoration decorator, int indexOffset) {
+    this(chars, font, coreMetrics, decorator, indexOffset, null, null);
+  }
+
+  private TextLineComponent(
+      char[] chars, Font font, CoreMetrics coreMetrics, Decoration decorator, int indexOffset,
+      float[] positions, float[] glyphPositions) {
     this.chars = chars;
     this.font = font;
     this.coreMetrics = coreMetrics;
     this.decorator = decorator;
     this.indexOffset = indexOffset;
+    this.positions = positions;
+    this.glyphPositions = glyphPositions;
   }
 
   public CoreMetrics getCoreMetrics() {
     return coreMetrics;
   }
 
+  private float[] getPositions() {
+    float[] result = positions;
+    if (result == null) {
+      int numCharacters = getNumCharacters();
+      result = new float[numCharacters + 1];
+      if (numCharacters > 0) {
+        float[] widths = new float[numCharacters];
+        font.sjGetAndroidPaint().getTextWidths(chars, indexOffset, numCharacters, widths);
+        for (int i = 0; i < numCharacters; i++) {
+          result[i + 1] = result[i] + widths[i];
+        }
+      }
+      // Racing threads compute identical arrays, so it doesn't matter whose is kept
+      positions = result;
+    }
+    return result;
+  }
+
   public float getAdvance() {
-    return getAdvanceBetween(0, getNumCharacters());
+    return getPositions()[getNumCharacters()];
   }
 
+  /**
+   * @return null, since Android fonts always draw along a horizontal baseline
+   */
   public AffineTransform getBaselineTransform() {
-    // TODO
     return null;
   }
 
   public float getCharX(int indexInArray) {
-    // TODO
-    return 0;
+    return getPositions()[indexInArray];
   }
 
+  /**
+   * @return 0, since glyphs are drawn on the baseline
+   */
   public float getCharY(int indexInArray) {
-    // TODO
     return 0;
   }
 
@@ -74,77 +119,209 @@ public class TextLineComponent {
     return chars.length - indexOffset;
   }
 
-  public Rectangle getPixelBounds(FontRenderContext frc, float v, float v1) {
-    // TODO
-    return null;
+  public Rectangle getPixelBounds(FontRenderContext frc, float x, float y) {
+    Rectangle2D bounds = getVisualBounds();
+    int left = (int) Math.floor(x + bounds.getMinX());
+    int top = (int) Math.floor(y + bounds.getMinY());
+    return new Rectangle(left, top, (int) Math.ceil(x + bounds.getMaxX()) - left,
+        (int) Math.ceil(y + bounds.getMaxY()) - top);
   }
 
+  /**
+   * @return false if the offset would put the caret between a surrogate pair, or before a
+   * combining mark
+   */
   public boolean caretAtOffsetIsValid(int i) {
-    // TODO
-    return false;
+    if (i <= 0 || i >= getNumCharacters()) {
+      return true;
+    }
+    char c = chars[i + indexOffset];
+    if (Character.isLowSurrogate(c)) {
+      return false;
+    }
+    switch (Character.getType(c)) {
+      case Character.NON_SPACING_MARK:
+      case Character.ENCLOSING_MARK:
+      case Character.COMBINING_SPACING_MARK:
+        return false;
+      default:
+        return true;
+    }
   }
 
   public Rectangle2D getCharVisualBounds(int indexInTlc) {
-    return getBounds(indexInTlc, 1);
+    Rectangle2D bounds = getBounds(indexInTlc, indexInTlc + 1);
+    bounds.setRect(bounds.getX() + getCharX(indexInTlc), bounds.getY(), bounds.getWidth(),
+        bounds.getHeight());
+    return bounds;
   }
 
+  /**
+   * Draws all the characters with one call, directly onto the Android canvas if {@code g2} is a
+   * {@link SkinJobGraphics}.
+   */
   public void draw(Graphics2D g2, float x, float y) {
-    // TODO
+    int numCharacters = getNumCharacters();
+    if (numCharacters == 0) {
+      return;
+    }
+    if (!(g2 instanceof SkinJobGraphics)) {
+      Font oldFont = g2.getFont();
+      g2.setFont(font);
+      g2.drawString(new String(chars, indexOffset, numCharacters), x, y);
+      g2.setFont(oldFont);
+      return;
+    }
+    Paint paint = new Paint(font.sjGetAndroidPaint());
+    paint.setColor(g2.getColor().getRGB());
+    Canvas canvas = ((SkinJobGraphics) g2).sjGetAndroidCanvas();
+    synchronized (g2) {
+      int saveCount = canvas.save();
+      canvas.concat(Geometry.transformToMatrix(g2.getTransform()));
+      if (glyphPositions != null) {
+        float[] xy = new float[numCharacters * 2];
+        for (int i = 0; i < numCharacters; i++) {
+          xy[i * 2] = x + glyphPositions[i];
+          xy[i * 2 + 1] = y;
+        }
+        canvas.drawPosText(chars, indexOffset, numCharacters, xy, paint);
+      } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+        boolean rtl = indexOffset > 0 && chars[0] == RIGHT_TO_LEFT_OVERRIDE;
+        canvas.drawTextRun(chars, indexOffset, numCharacters, indexOffset, numCharacters, x, y,
+            rtl, paint);
+      } else {
+        canvas.drawText(chars, indexOffset, numCharacters, x, y, paint);
+      }
+      canvas.restoreToCount(saveCount);
+    }
   }
 
-  public Shape getOutline(float loc, float loc1) {
-    // TODO
-    return null;
+  public Shape getOutline(float x, float y) {
+    int numCharacters = getNumCharacters();
+    if (numCharacters == 0) {
+      return new Rectangle2D.Float();
+    }
+    Path path = new Path();
+    font.sjGetAndroidPaint().getTextPath(chars, indexOffset, numCharacters, x, y, path);
+    return Geometry.androidPathToShape(path);
   }
 
   public int getNumJustificationInfos() {
-    // TODO
-    return 0;
+    return getNumCharacters();
   }
 
+  /**
+   * Whitespace absorbs most of the justification; other characters may only grow a little, and
+   * don't shrink.
+   */
   public void getJustificationInfos(
       GlyphJustificationInfo[] infos, int infoPosition, int rangeMin, int rangeMax) {
-    // TODO
+    for (int i = rangeMin; i < rangeMax; i++) {
+      float advance = getCharAdvance(i);
+      GlyphJustificationInfo info;
+      if (Character.isWhitespace(chars[i + indexOffset])) {
+        info = new GlyphJustificationInfo(advance, true,
+            GlyphJustificationInfo.PRIORITY_WHITESPACE, 0, advance, true,
+            GlyphJustificationInfo.PRIORITY_WHITESPACE, 0, advance / 2);
+      } else {
+        info = new GlyphJustificationInfo(advance, false,
+            GlyphJustificationInfo.PRIORITY_INTERCHAR, 0, advance / 4, false,
+            GlyphJustificationInfo.PRIORITY_INTERCHAR, 0, 0);
+      }
+      infos[infoPosition + i] = info;
+    }
   }
 
-  public TextLineComponent applyJustificationDeltas(float[] deltas, int i, boolean[] flags) {
-    TextLineComponent copy = new TextLineComponent(
-        chars,
-        font,
-        coreMetrics,
-        decorator,
-        indexOffset);
-    // TODO
-    return copy;
+  /**
+   * @param deltas the left and right delta for each character, starting at {@code deltaStart}
+   * @param flags on return, {@code flags[0]} is false, since moving glyphs never calls for
+   * rejustification
+   */
+  public TextLineComponent applyJustificationDeltas(
+      float[] deltas, int deltaStart, boolean[] flags) {
+    flags[0] = false;
+    int numCharacters = getNumCharacters();
+    float[] oldPositions = getPositions();
+    float[] newPositions = new float[numCharacters + 1];
+    float[] newGlyphPositions = new float[numCharacters];
+    for (int i = 0; i < numCharacters; i++) {
+      float left = deltas[deltaStart + i * 2];
+      float right = deltas[deltaStart + i * 2 + 1];
+      float glyphOffset = (glyphPositions == null) ? 0 : glyphPositions[i] - oldPositions[i];
+      newGlyphPositions[i] = newPositions[i] + left + glyphOffset;
+      newPositions[i + 1] = newPositions[i] + left + (oldPositions[i + 1] - oldPositions[i])
+          + right;
+    }
+    return new TextLineComponent(chars, font, coreMetrics, decorator, indexOffset, newPositions,
+        newGlyphPositions);
   }
 
+  /**
+   * @return the logical bounds, widened by the italic angle, and the visual bounds
+   */
   public Rectangle2D getItalicBounds() {
-    // TODO
-    return null;
+    float slope = coreMetrics.italicAngle;
+    float left = 0;
+    float right = getAdvance();
+    if (slope > 0) {
+      right += slope * coreMetrics.ascent;
+      left -= slope * coreMetrics.descent;
+    } else if (slope < 0) {
+      left += slope * coreMetrics.ascent;
+      right -= slope * coreMetrics.descent;
+    }
+    Rectangle2D bounds = new Rectangle2D.Float(left, -coreMetrics.ascent, right - left,
+        coreMetrics.ascent + coreMetrics.descent);
+    Rectangle2D.union(bounds, getVisualBounds(), bounds);
+    return bounds;
   }
 
   public Rectangle2D getVisualBounds() {
-    return getBounds(0, chars.length);
+    return getBounds(0, getNumCharacters());
   }
 
   public float getCharAdvance(int indexInArray) {
-    return getAdvanceBetween(indexInArray + indexOffset, 1);
+    float[] charX = getPositions();
+    return charX[indexInArray + 1] - charX[indexInArray];
   }
 
   public float getAdvanceBetween(int measureStart, int measureLimit) {
-    return font.sjGetAndroidPaint()
-        .measureText(chars, measureStart + indexOffset, measureLimit - measureStart - indexOffset);
+    float[] charX = getPositions();
+    return charX[measureLimit] - charX[measureStart];
   }
 
+  /**
+   * @return the bounds of the pixels drawn by the characters in the range, relative to the x
+   * position of the first one
+   */
   protected Rectangle2D getBounds(int measureStart, int measureLimit) {
+    if (measureLimit <= measureStart) {
+      return new Rectangle2D.Double();
+    }
     Rect bounds = new Rect();
-    font.sjGetAndroidPaint().getTextBounds(chars, measureStart + indexOffset, measureLimit, bounds);
+    font.sjGetAndroidPaint().getTextBounds(chars, measureStart + indexOffset,
+        measureLimit - measureStart, bounds);
     return Geometry.androidRectToRectangle2D(bounds);
   }
 
-  public int getLineBreakIndex(int i, float width) {
-    // TODO
-    return 0;
+  /**
+   * @return the index of the first character, at or after {@code start}, that would end beyond
+   * {@code width}; or the number of characters if they all fit. Found by binary search.
+   */
+  public int getLineBreakIndex(int start, float width) {
+    float[] charX = getPositions();
+    float limitX = charX[start] + width;
+    int low = start;
+    int high = getNumCharacters();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (charX[mid + 1] > limitX) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
   }
 
   public TextLineComponent getSubset(int start, int length, int subsetFlag) {
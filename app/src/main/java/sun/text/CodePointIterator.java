@@ -6,59 +6,70 @@ import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 /**
- * Reimplementation of the OpenJDK class for use by SkinJob.
+ * Reimplementation of the OpenJDK class for use by SkinJob. Iterates over the code points of a
+ * {@link CharacterIterator} from its current index, without moving it.
  */
 public final class CodePointIterator implements Iterator<Integer> {
   public static final int DONE = CharacterIterator.DONE;
   private final CharacterIterator aci;
+  private final int limit;
+  /**
+   * Index of the next code point in {@link #aci}.
+   */
   private int index;
-  private Integer next;
 
   private CodePointIterator(CharacterIterator aci) {
     this.aci = aci;
+    index = aci.getIndex();
+    limit = aci.getEndIndex();
   }
 
   public static CodePointIterator create(CharacterIterator aci) {
     return new CodePointIterator(aci);
   }
 
-  private int internalNext() {
-    char next = aci.next();
-    if (next == CharacterIterator.DONE) {
+  public static CodePointIterator create(char[] chars, int start, int limit) {
+    return create(new StringCharacterIterator(new String(chars), start, limit, start));
+  }
+
+  /**
+   * @return the next code point, without moving past it, or {@link #DONE} if there are no more
+   */
+  public int peek() {
+    if (index >= limit) {
       return DONE;
     }
-    if (Character.isHighSurrogate(next)) {
-      return Character.toCodePoint(next, aci.next());
+    int saved = aci.getIndex();
+    char high = aci.setIndex(index);
+    int codePoint = high;
+    if (Character.isHighSurrogate(high) && index + 1 < limit) {
+      char low = aci.next();
+      if (Character.isLowSurrogate(low)) {
+        codePoint = Character.toCodePoint(high, low);
+      }
     }
-    return (int) next;
+    aci.setIndex(saved);
+    return codePoint;
   }
 
   @Override
   public boolean hasNext() {
-    if (next == null) {
-      next = internalNext();
-    }
-    return next != DONE;
+    return index < limit;
   }
 
   @Override
   public Integer next() {
-    if (next == null) {
-      next = internalNext();
-    }
-    Integer returned = next;
-    if (next == DONE) {
+    if (index >= limit) {
       throw new NoSuchElementException();
     }
-    index++;
-    next = null;
-    return returned;
-  }
-
-  public static CodePointIterator create(char[] chars, int start, int limit) {
-    return create(new StringCharacterIterator(new String(chars), start, limit, 0));
+    int codePoint = peek();
+    index += Character.charCount(codePoint);
+    return codePoint;
   }
 
+  /**
+   * @return the index, in the underlying text, of the next code point
+   */
   public int charIndex() {
     return index;
   }